@@ -0,0 +1,160 @@
+package benchmark;
+
+import io.FeatureBlock;
+import io.PartitionBuilder;
+import org.jblas.DoubleMatrix;
+
+import java.util.Random;
+
+/**
+ * Random data for the benchmarks. The seed is fixed, so every run measures the same data: two
+ * classes, every feature is non-zero with the given density, values are 1 for bitset blocks and
+ * uniform in (0, 1] otherwise.
+ */
+final class BenchmarkData
+{
+    private static final long SEED = 42;
+
+    private BenchmarkData()
+    {
+    }
+
+    /**
+     * Create data points in libsvm format.
+     * @param rows number of data points
+     * @param width number of features
+     * @param density ratio of non-zero values
+     * @return one line per data point
+     */
+    static String[] libsvmLines(int rows, int width, double density)
+    {
+        Random random = new Random(SEED);
+        String lines[] = new String[rows];
+        StringBuilder line = new StringBuilder();
+
+        for(int i = 0; i < rows; i++) {
+            line.setLength(0);
+            line.append(i % 3 == 0 ? "1" : "-1");
+
+            for(int j = 0; j < width; j++) {
+                if(random.nextDouble() < density) {
+                    line.append(' ').append(j + 1).append(':').append(1.0 - random.nextDouble());
+                }
+            }
+
+            lines[i] = line.toString();
+        }
+
+        return lines;
+    }
+
+    /**
+     * Create the feature block of one partition the way the selector builds it.
+     * @param rows number of data points
+     * @param width number of features
+     * @param density ratio of non-zero values
+     * @param storage storage of the block
+     * @return feature block with two classes
+     */
+    static FeatureBlock block(int rows, int width, double density, PartitionBuilder.Storage storage)
+    {
+        Random random = new Random(SEED);
+        PartitionBuilder builder = new PartitionBuilder(0);
+        int indexes[] = new int[width];
+        double values[] = new double[width];
+
+        for(int i = 0; i < rows; i++) {
+            int size = 0;
+
+            for(int j = 0; j < width; j++) {
+                if(random.nextDouble() < density) {
+                    indexes[size] = j;
+                    values[size++] = storage == PartitionBuilder.Storage.BITSET ? 1.0 : 1.0 - random.nextDouble();
+                }
+            }
+
+            builder.addRow(i % 3 == 0 ? 1.0 : -1.0, indexes, values, size);
+        }
+
+        // labels -1 and 1, label 1 is class 0
+        return builder.build(range(width), new double[] {-1.0, 1.0}, new int[] {1, 0}, 2, storage);
+    }
+
+    /**
+     * Get the number of data points per class of the generated data.
+     * @param rows number of data points
+     * @return count of class 0 and class 1
+     */
+    static int[] classCounts(int rows)
+    {
+        int positive = (rows + 2) / 3;
+        return new int[] {positive, rows - positive};
+    }
+
+    /**
+     * Choose selected features spread evenly over all features.
+     * @param width number of features
+     * @param count number of selected features
+     * @return indexes in ascending order
+     */
+    static int[] selected(int width, int count)
+    {
+        int indexes[] = new int[count];
+
+        for(int i = 0; i < count; i++) {
+            indexes[i] = (int) ((long) i * width / count);
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Get the features that are not selected.
+     * @param width number of features
+     * @param selected selected features in ascending order
+     * @return indexes in ascending order
+     */
+    static int[] unselected(int width, int[] selected)
+    {
+        int indexes[] = new int[width - selected.length];
+
+        for(int j = 0, s = 0, u = 0; j < width; j++) {
+            if(s < selected.length && selected[s] == j) {
+                s++;
+            } else {
+                indexes[u++] = j;
+            }
+        }
+
+        return indexes;
+    }
+
+    /**
+     * Create a matrix with uniform random values.
+     * @param rows number of rows
+     * @param columns number of columns
+     * @return random matrix
+     */
+    static DoubleMatrix randomMatrix(int rows, int columns)
+    {
+        Random random = new Random(SEED);
+        DoubleMatrix matrix = new DoubleMatrix(rows, columns);
+
+        for(int i = 0; i < matrix.length; i++) {
+            matrix.put(i, random.nextDouble());
+        }
+
+        return matrix;
+    }
+
+    private static int[] range(int width)
+    {
+        int indexes[] = new int[width];
+
+        for(int j = 0; j < width; j++) {
+            indexes[j] = j;
+        }
+
+        return indexes;
+    }
+}
@@ -0,0 +1,55 @@
+package benchmark;
+
+import helper.FSUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of boxed rows into a primitive matrix (FSUtil.convertToDoubleArray).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark
+{
+    @Param({"1000", "5000"})
+    private int rows;
+
+    @Param({"100", "1000"})
+    private int width;
+
+    @Param({"0.01", "0.1"})
+    private double density;
+
+    private List<Double[]> list;
+
+    @Setup
+    public void setUp()
+    {
+        Random random = new Random(42);
+        list = new ArrayList<>(rows);
+
+        for(int i = 0; i < rows; i++) {
+            Double row[] = new Double[width];
+
+            for(int j = 0; j < width; j++) {
+                row[j] = random.nextDouble() < density ? 1.0 - random.nextDouble() : 0.0;
+            }
+
+            list.add(row);
+        }
+    }
+
+    @Benchmark
+    public double[][] convertToDoubleArray()
+    {
+        return FSUtil.convertToDoubleArray(list);
+    }
+}
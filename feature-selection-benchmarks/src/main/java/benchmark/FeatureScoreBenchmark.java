@@ -0,0 +1,58 @@
+package benchmark;
+
+import io.ClassStatistics;
+import io.FeatureBlock;
+import io.GramStatistics;
+import io.PartitionBuilder;
+import io.ResponseMatrixValue;
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of step 1-3 of one partition: the column sums per class and v, giving E and v
+ * (ClassStatistics), and the same together with the Gram matrix (GramStatistics).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeatureScoreBenchmark
+{
+    @Param({"1000", "5000"})
+    private int rows;
+
+    @Param({"1000", "4000"})
+    private int width;
+
+    @Param({"0.01", "0.1"})
+    private double density;
+
+    @Param({"BITSET", "SPARSE", "DENSE"})
+    private PartitionBuilder.Storage storage;
+
+    private FeatureBlock block;
+    private DoubleMatrix responses;
+
+    @Setup
+    public void setUp()
+    {
+        block = BenchmarkData.block(rows, width, density, storage);
+        responses = ResponseMatrixValue.getResponseTable(BenchmarkData.classCounts(rows));
+    }
+
+    @Benchmark
+    public DoubleMatrix classStatistics()
+    {
+        return new ClassStatistics().add(block).getFeatureScore(responses).computeScores();
+    }
+
+    @Benchmark
+    public DoubleMatrix gramStatistics()
+    {
+        return new GramStatistics().add(block).getGramMatrix();
+    }
+}
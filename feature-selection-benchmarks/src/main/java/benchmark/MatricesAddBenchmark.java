@@ -0,0 +1,43 @@
+package benchmark;
+
+import io.FeatureMatrices;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sum of the step 10 blocks of two partitions in the aggregation tree (FeatureMatrices.add).
+ * The sum is taken in place, so the same total is added to in every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatricesAddBenchmark
+{
+    @Param({"1000", "4000"})
+    private int width;
+
+    @Param({"10", "100"})
+    private int selected;
+
+    private FeatureMatrices total;
+    private FeatureMatrices partition;
+
+    @Setup
+    public void setUp()
+    {
+        total = new FeatureMatrices(BenchmarkData.randomMatrix(selected, selected), null, null,
+                BenchmarkData.randomMatrix(selected, width - selected), null);
+        partition = new FeatureMatrices(BenchmarkData.randomMatrix(selected, selected), null, null,
+                BenchmarkData.randomMatrix(selected, width - selected), null);
+    }
+
+    @Benchmark
+    public FeatureMatrices add()
+    {
+        return total.add(partition);
+    }
+}
@@ -0,0 +1,52 @@
+package benchmark;
+
+import io.LibSVMParser;
+import io.PartitionBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing pass of one partition: every libsvm line is parsed and added to the partition, which
+ * profiles it on the way (AdsInputReader.parse).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark
+{
+    @Param({"1000", "5000"})
+    private int rows;
+
+    @Param({"1000", "5000"})
+    private int width;
+
+    @Param({"0.01", "0.1"})
+    private double density;
+
+    private String[] lines;
+
+    @Setup
+    public void setUp()
+    {
+        lines = BenchmarkData.libsvmLines(rows, width, density);
+    }
+
+    @Benchmark
+    public PartitionBuilder parse()
+    {
+        PartitionBuilder builder = new PartitionBuilder(0);
+        LibSVMParser parser = new LibSVMParser();
+
+        for(String line : lines) {
+            if(parser.parse(line)) {
+                builder.addRow(parser);
+            }
+        }
+
+        return builder;
+    }
+}
@@ -0,0 +1,94 @@
+package benchmark;
+
+import io.ClassStatistics;
+import io.FeatureBlock;
+import io.FeatureMatrices;
+import io.FeatureScore;
+import io.GreedySelection;
+import io.PartitionBuilder;
+import io.ResponseMatrixValue;
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring of the unselected features on the driver (step 11): with the pseudo-inverse of A and
+ * g/w from the summed step 10 blocks (FeatureMatrices.computeScores), and incrementally, where
+ * one more feature is added to the Cholesky factor and the residual scores (GreedySelection).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringBenchmark
+{
+    @Param({"1000", "5000"})
+    private int rows;
+
+    @Param({"1000", "4000"})
+    private int width;
+
+    @Param({"0.01", "0.1"})
+    private double density;
+
+    @Param({"10", "100"})
+    private int selected;
+
+    private int[] selectedIndexes;
+    private FeatureScore score;
+    private FeatureMatrices featureMatrices;
+    private DoubleMatrix[] crossProducts;
+
+    /**
+     * Selection with all but the last selected feature, renewed for every call.
+     */
+    private GreedySelection selection;
+
+    @Setup(Level.Trial)
+    public void setUp()
+    {
+        FeatureBlock block = BenchmarkData.block(rows, width, density, PartitionBuilder.Storage.SPARSE);
+        DoubleMatrix responses = ResponseMatrixValue.getResponseTable(BenchmarkData.classCounts(rows));
+        score = new ClassStatistics().add(block).getFeatureScore(responses);
+
+        selectedIndexes = BenchmarkData.selected(width, selected);
+        int unselectedIndexes[] = BenchmarkData.unselected(width, selectedIndexes);
+        DoubleMatrix matrixC1 = block.crossProduct(block.getColumns(selectedIndexes));
+
+        featureMatrices = new FeatureMatrices(matrixC1.getColumns(selectedIndexes),
+                score.getEMatrix().getColumns(selectedIndexes), score.getEMatrix().getColumns(unselectedIndexes),
+                matrixC1.getColumns(unselectedIndexes), score.getVMatrix().getColumns(unselectedIndexes));
+
+        crossProducts = new DoubleMatrix[selected];
+
+        for(int i = 0; i < selected; i++) {
+            crossProducts[i] = block.columnCrossProducts(selectedIndexes[i]);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpSelection()
+    {
+        selection = new GreedySelection(score, false);
+
+        for(int i = 0; i < selected - 1; i++) {
+            selection.add(selectedIndexes[i], crossProducts[i]);
+        }
+    }
+
+    @Benchmark
+    public DoubleMatrix pinvScores()
+    {
+        return featureMatrices.computeScores();
+    }
+
+    @Benchmark
+    public int incrementalScores()
+    {
+        selection.add(selectedIndexes[selected - 1], crossProducts[selected - 1]);
+        return selection.nextFeature();
+    }
+}
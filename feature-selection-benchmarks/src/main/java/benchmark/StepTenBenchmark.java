@@ -0,0 +1,63 @@
+package benchmark;
+
+import io.FeatureBlock;
+import io.FeatureMatrices;
+import io.PartitionBuilder;
+import org.jblas.DoubleMatrix;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Step 10 of one partition when it is recomputed in every iteration: the columns of the selected
+ * features, their cross-products with all features and the blocks A and C12
+ * (FeatureMatrices.fromBlock, as in AdsInputReader.getNextScore), and the step 8 cross-products
+ * of one feature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StepTenBenchmark
+{
+    @Param({"1000", "5000"})
+    private int rows;
+
+    @Param({"1000", "4000"})
+    private int width;
+
+    @Param({"0.01", "0.1"})
+    private double density;
+
+    @Param({"10", "100"})
+    private int selected;
+
+    @Param({"BITSET", "SPARSE", "DENSE"})
+    private PartitionBuilder.Storage storage;
+
+    private FeatureBlock block;
+    private int[] selectedIndexes;
+    private int[] unselectedIndexes;
+
+    @Setup
+    public void setUp()
+    {
+        block = BenchmarkData.block(rows, width, density, storage);
+        selectedIndexes = BenchmarkData.selected(width, selected);
+        unselectedIndexes = BenchmarkData.unselected(width, selectedIndexes);
+    }
+
+    @Benchmark
+    public FeatureMatrices featureMatrices()
+    {
+        return FeatureMatrices.fromBlock(block, selectedIndexes, unselectedIndexes);
+    }
+
+    @Benchmark
+    public DoubleMatrix columnCrossProducts()
+    {
+        return block.columnCrossProducts(selectedIndexes[selected - 1]);
+    }
+}
@@ -1,16 +1,17 @@
 import io.AdsInputReader;
 import io.FSInputReader;
+import io.YoutubeInputReader;
 
 public class FeatureSelector
 {
 	/**
 	 * Run feature selection with program arguments:
 	 * 0: (String) Complete path to input file (libsvm format)
-	 * 1: (String) Dataset name ("ads" for ads dataset, "dorothea" for dorothea dataset)
+	 * 1: (String) Dataset name ("ads" for ads dataset, "dorothea" for dorothea dataset, "youtube" for youtube dataset)
 	 * 2: (Integer) Number of features selected
 	 * 3: (Integer) Number of executors in Spark
 	 * 4: (String) Output file name
-	 * 5: (String) Google Cloud Storage bucket name
+	 * 5: (String) Google Cloud Storage bucket name ("none" to keep the output local)
 	 * @param args Program arguments as above.
 	 */
 	public static void main(String args[]) throws Exception
@@ -22,15 +23,14 @@ public class FeatureSelector
 		String outputName = args[4];
 		String bucketName = args[5];
 
-		FSInputReader reader = new AdsInputReader(fileName, numOfExecutors);
+		FSInputReader reader;
 
-		long startTime = System.currentTimeMillis();
+		if(datasetName.contains("youtube")) {
+			reader = new YoutubeInputReader(fileName, numOfExecutors);
+		} else {
+			reader = new AdsInputReader(fileName, numOfExecutors);
+		}
 
 		reader.process(numOfSelectedFeatures, outputName, datasetName, bucketName);
-
-		long endTime = System.currentTimeMillis();
-		long totalTime = endTime - startTime;
-		System.out.println("Time: " +  totalTime/1000 + " s " + totalTime%1000 + " ms");
-
 	}
 }
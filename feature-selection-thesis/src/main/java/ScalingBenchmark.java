@@ -0,0 +1,291 @@
+import org.apache.spark.JavaSparkListener;
+import org.apache.spark.scheduler.SparkListenerStageCompleted;
+import org.apache.spark.scheduler.StageInfo;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+public class ScalingBenchmark
+{
+	private static final String CHILD = "child";
+
+	/**
+	 * Names of the metrics stages (see io.SelectionMetrics) that make up the selection itself.
+	 */
+	private static final Set<String> SELECTION_STAGES = new HashSet<>(Arrays.asList("scoring", "resume", "iteration"));
+
+	/**
+	 * Options that are not passed on to the runs: a run has to neither reuse the selection of an
+	 * earlier run from the cache or a checkpoint, nor write into the metrics file of another run.
+	 */
+	private static final List<String> RUN_OPTIONS = Arrays.asList("-Dspark.master=", "-Dspark.fs.cache.path=",
+			"-Dspark.fs.checkpoint.path=", "-Dspark.fs.metrics.file=", "-agentlib");
+
+	/**
+	 * Run FeatureSelector end to end under local[N] for N = 1 up to the number of cores, each in its
+	 * own JVM, and report the time of the selection and of the whole run, throughput, time per
+	 * Spark stage and peak heap. The selection time is the wall time of the selection stages in
+	 * the metrics of the run, without reading the input, writing the output and starting Spark. The selection has to
+	 * be the same for every N; with the planted features of a synthetic dataset (SyntheticDataset)
+	 * it is also checked which of them are selected. Options of the JVM (e.g. -Xmx, -Dspark.fs.*)
+	 * are passed on to the runs, except the cache and checkpoint paths, so that every run selects
+	 * from scratch. Program arguments:
+	 * 0: (String) Complete path to input file (libsvm or binary format)
+	 * 1: (String) Dataset name, as for FeatureSelector
+	 * 2: (Integer) Number of features selected
+	 * 3: (String) Directory for the output and the log of every run
+	 * 4: (Integer) Highest number of cores (optional, default: all cores)
+	 * 5: (String) File with the planted features (optional)
+	 * @param args Program arguments as above.
+	 */
+	public static void main(String args[]) throws Exception
+	{
+		if(args[0].equals(CHILD)) {
+			runChild(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+
+		String fileName = args[0];
+		String datasetName = args[1];
+		int numOfSelectedFeatures = Integer.parseInt(args[2]);
+		String directory = args[3];
+		int maxCores = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+		Map<String, Set<Integer>> planted = args.length > 5 ? readPlanted(args[5]) : null;
+
+		new File(directory).mkdirs();
+		List<Integer> reference = null;
+		boolean same = true;
+
+		for(int cores = 1; cores <= maxCores; cores++) {
+			Run run = runSelector(fileName, datasetName, numOfSelectedFeatures, directory, cores);
+			System.out.println(run);
+
+			if(reference == null) {
+				reference = run.selected;
+			} else if(!reference.equals(run.selected)) {
+				same = false;
+				System.out.println("  different selection than with local[1]: " + run.selected);
+			}
+		}
+
+		System.out.println("Same selection for all runs: " + same);
+
+		if(planted != null && reference != null) {
+			printPlantedCheck(reference, planted);
+		}
+
+		if(!same) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Result of one run.
+	 */
+	private static class Run
+	{
+		private int cores;
+		private long time = 0;
+		private long runTime = -1;
+		private long rows;
+		private long peakHeap;
+		private List<Integer> selected = new ArrayList<>();
+		private Map<String, long[]> stages = new TreeMap<>();
+
+		@Override
+		public String toString()
+		{
+			StringBuilder result = new StringBuilder("local[" + cores + "]: selection " + time + " ms ("
+					+ (time > 0 ? rows * 1000 / time : 0) + " rows/s), run " + runTime + " ms, peak heap " + (peakHeap >> 20) + " MB");
+			List<Map.Entry<String, long[]>> byTime = new ArrayList<>(stages.entrySet());
+			byTime.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+
+			for(Map.Entry<String, long[]> stage : byTime) {
+				result.append("\n  ").append(stage.getKey()).append(": ").append(stage.getValue()[0])
+						.append(" stages, ").append(stage.getValue()[1]).append(" ms");
+			}
+
+			return result.toString();
+		}
+	}
+
+	/**
+	 * Run the selector in a new JVM with local[cores] and parse its log.
+	 */
+	private static Run runSelector(String fileName, String datasetName, int numOfSelectedFeatures, String directory, int cores)
+			throws IOException, InterruptedException
+	{
+		List<String> command = new ArrayList<>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+		for(String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if(RUN_OPTIONS.stream().noneMatch(argument::startsWith)) {
+				command.add(argument);
+			}
+		}
+
+		File metrics = Paths.get(directory, "metrics-" + cores + ".jsonl").toFile();
+		metrics.delete();
+
+		command.addAll(Arrays.asList("-Dspark.master=local[" + cores + "]",
+				"-Dspark.extraListeners=" + StageTimes.class.getName(),
+				"-Dspark.fs.metrics.file=" + metrics,
+				"-cp", System.getProperty("java.class.path"), ScalingBenchmark.class.getName(), CHILD,
+				fileName, datasetName, String.valueOf(numOfSelectedFeatures), String.valueOf(cores),
+				Paths.get(directory, "selected-" + cores + ".data").toString(), "none"));
+
+		File log = Paths.get(directory, "local-" + cores + ".log").toFile();
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+
+		if(process.waitFor() != 0) {
+			throw new IOException("Run with local[" + cores + "] failed, see " + log);
+		}
+
+		Run run = new Run();
+		run.cores = cores;
+
+		for(String line : Files.readAllLines(log.toPath())) {
+			if(line.startsWith("Run time: ")) {
+				run.runTime = Long.parseLong(line.substring("Run time: ".length()));
+			} else if(line.startsWith("# rows: ")) {
+				run.rows = Long.parseLong(line.substring("# rows: ".length(), line.indexOf(',')));
+			} else if(line.startsWith("Peak heap: ")) {
+				run.peakHeap = Long.parseLong(line.substring("Peak heap: ".length()));
+			} else if(line.startsWith("Selected indexes: [")) {
+				String indexes = line.substring("Selected indexes: [".length(), line.length() - 1);
+
+				for(String index : indexes.split(", ")) {
+					if(!index.isEmpty()) {
+						run.selected.add(Integer.parseInt(index));
+					}
+				}
+			} else if(line.startsWith(StageTimes.PREFIX)) {
+				String fields[] = line.substring(StageTimes.PREFIX.length()).split("\t");
+				long stage[] = run.stages.computeIfAbsent(fields[0], name -> new long[2]);
+				stage[0]++;
+				stage[1] += Long.parseLong(fields[1]);
+			}
+		}
+
+		for(String line : Files.readAllLines(metrics.toPath())) {
+			if(SELECTION_STAGES.contains(getJsonValue(line, "stage"))) {
+				run.time += Long.parseLong(getJsonValue(line, "wallMs"));
+			}
+		}
+
+		return run;
+	}
+
+	/**
+	 * Get a value of a flat JSON line as written by io.StageMetrics.
+	 */
+	private static String getJsonValue(String line, String key)
+	{
+		int start = line.indexOf("\"" + key + "\":") + key.length() + 3;
+
+		if(start < key.length() + 3) {
+			return null;
+		}
+
+		if(line.charAt(start) == '"') {
+			return line.substring(start + 1, line.indexOf('"', start + 1));
+		}
+
+		int end = start;
+
+		while(end < line.length() && line.charAt(end) != ',' && line.charAt(end) != '}') {
+			end++;
+		}
+
+		return line.substring(start, end);
+	}
+
+	/**
+	 * Run FeatureSelector in this JVM and print its time and the peak heap.
+	 */
+	private static void runChild(String args[]) throws Exception
+	{
+		long startTime = System.currentTimeMillis();
+
+		FeatureSelector.main(args);
+
+		System.out.println("Run time: " + (System.currentTimeMillis() - startTime));
+
+		// the executors of local mode run in this JVM
+		long peakHeap = 0;
+
+		for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if(pool.getType() == MemoryType.HEAP) {
+				peakHeap += pool.getPeakUsage().getUsed();
+			}
+		}
+
+		System.out.println("Peak heap: " + peakHeap);
+		System.exit(0);
+	}
+
+	/**
+	 * Read the planted features written by SyntheticDataset.
+	 */
+	private static Map<String, Set<Integer>> readPlanted(String fileName) throws IOException
+	{
+		Map<String, Set<Integer>> planted = new HashMap<>();
+
+		for(String line : Files.readAllLines(Paths.get(fileName))) {
+			String fields[] = line.trim().split(" ");
+			Set<Integer> indexes = new HashSet<>();
+
+			for(int i = 1; i < fields.length; i++) {
+				indexes.add(Integer.parseInt(fields[i]));
+			}
+
+			planted.put(fields[0], indexes);
+		}
+
+		return planted;
+	}
+
+	/**
+	 * Print how many planted features are among the first selected ones: the informative features
+	 * should come first, the redundant ones should not.
+	 */
+	private static void printPlantedCheck(List<Integer> selected, Map<String, Set<Integer>> planted)
+	{
+		Set<Integer> informative = planted.getOrDefault("informative", Collections.emptySet());
+		Set<Integer> redundant = planted.getOrDefault("redundant", Collections.emptySet());
+		List<Integer> first = selected.subList(0, Math.min(selected.size(), informative.size()));
+		int foundInformative = 0, foundRedundant = 0;
+
+		for(int index : first) {
+			foundInformative += informative.contains(index) ? 1 : 0;
+			foundRedundant += redundant.contains(index) ? 1 : 0;
+		}
+
+		System.out.println("Planted features among the first " + first.size() + " selected: "
+				+ foundInformative + " / " + informative.size() + " informative, " + foundRedundant + " redundant");
+	}
+
+	/**
+	 * Prints the duration of every completed Spark stage, registered with spark.extraListeners.
+	 */
+	public static class StageTimes extends JavaSparkListener
+	{
+		private static final String PREFIX = "Stage time: ";
+
+		@Override
+		public void onStageCompleted(SparkListenerStageCompleted stageCompleted)
+		{
+			StageInfo info = stageCompleted.stageInfo();
+
+			if(info.submissionTime().isDefined() && info.completionTime().isDefined()) {
+				long time = (Long) info.completionTime().get() - (Long) info.submissionTime().get();
+				System.out.println(PREFIX + info.name() + "\t" + time);
+			}
+		}
+	}
+}
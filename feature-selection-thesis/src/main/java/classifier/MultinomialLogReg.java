@@ -7,9 +7,11 @@ import org.apache.spark.mllib.classification.LogisticRegressionModel;
 import org.apache.spark.mllib.classification.LogisticRegressionWithLBFGS;
 import org.apache.spark.mllib.evaluation.MulticlassMetrics;
 import org.apache.spark.mllib.regression.LabeledPoint;
-import org.apache.spark.mllib.util.MLUtils;
+import io.BinaryDataset;
 import scala.Tuple2;
 
+import java.io.IOException;
+
 /**
  * Multinomial Logistic Regression to train and predict multiclass classification problem.
  * Source: http://spark.apache.org/docs/latest/mllib-linear-methods.html#logistic-regression
@@ -24,7 +26,7 @@ public class MultinomialLogReg {
      * 2: (Double) Proportion of training data from the whole input
      * @param args Program arguments as above.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         SparkConf conf = new SparkConf().setAppName("Multinomial LogReg");
         SparkContext sc = new SparkContext(conf);
 
@@ -33,7 +35,7 @@ public class MultinomialLogReg {
         double trainPart = Double.parseDouble(args[2]);
 
         double[] proportion = {trainPart, 1.0 - trainPart};
-        JavaRDD<LabeledPoint> data = MLUtils.loadLibSVMFile(sc, path).toJavaRDD();
+        JavaRDD<LabeledPoint> data = BinaryDataset.loadData(sc, path);
 
         // Split initial RDD into two... [70% training data, 30% testing data].
         JavaRDD<LabeledPoint>[] splits = data.randomSplit(proportion, 11L);
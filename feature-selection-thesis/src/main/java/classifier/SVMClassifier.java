@@ -7,9 +7,11 @@ import org.apache.spark.mllib.classification.SVMModel;
 import org.apache.spark.mllib.classification.SVMWithSGD;
 import org.apache.spark.mllib.evaluation.BinaryClassificationMetrics;
 import org.apache.spark.mllib.regression.LabeledPoint;
-import org.apache.spark.mllib.util.MLUtils;
+import io.BinaryDataset;
 import scala.Tuple2;
 
+import java.io.IOException;
+
 /**
  * SVM Classifier to train and predict binary classification problem.
  * Source: http://spark.apache.org/docs/latest/mllib-linear-methods.html#linear-support-vector-machines-svms
@@ -23,7 +25,7 @@ public class SVMClassifier
      * 1: (Double) Proportion of training data from the whole input
      * @param args Program arguments as above.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
         SparkConf conf = new SparkConf().setAppName("SVM Classifier");
         SparkContext sc = new SparkContext(conf);
@@ -31,7 +33,7 @@ public class SVMClassifier
         String path = args[0];
         double trainPart = Double.parseDouble(args[1]);
 
-        JavaRDD<LabeledPoint> data = MLUtils.loadLibSVMFile(sc, path).toJavaRDD();
+        JavaRDD<LabeledPoint> data = BinaryDataset.loadData(sc, path);
 
         // Split initial RDD into two... [60% training data, 40% testing data].
         JavaRDD<LabeledPoint> training = data.sample(false, trainPart, 11L);
@@ -4,15 +4,14 @@ import com.google.api.client.http.InputStreamContent;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.model.ObjectAccessControl;
 import com.google.api.services.storage.model.StorageObject;
-import helper.FSUtil;
-import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.broadcast.Broadcast;
 import org.jblas.DoubleMatrix;
-import org.jblas.Solve;
-import org.jblas.ranges.IndicesRange;
-import org.jblas.ranges.IntervalRange;
-import scala.Tuple2;
 
 import java.io.*;
 import java.security.GeneralSecurityException;
@@ -21,12 +20,54 @@ import java.util.*;
 
 public class AdsInputReader extends FSInputReader
 {
-    private static final int ADS_FEATURE_SIZE = 1558;
-    private static final int DOROTHEA_FEATURE_SIZE = 100000;
-    private Broadcast bcFeatures;
-    private Broadcast<double[]> bcInstances;
-    private JavaRDD<XYMatrix> xyMatrix;
-    long startTime = System.currentTimeMillis();
+    private Broadcast<Integer> bcFeatures;
+    private JavaRDD<FeatureBlock> xyMatrix;
+
+    /**
+     * Original index of each feature in xyMatrix, i.e. of the features kept after pruning.
+     */
+    private int[] liveColumns;
+    private DoubleMatrix gramMatrix;
+
+    /**
+     * Number of data points and label written to the output for each class.
+     */
+    private int[] classCounts;
+    private double[] classLabels;
+
+    /**
+     * Response table: one row of Y per class, see ResponseMatrixValue.
+     */
+    private DoubleMatrix responses;
+
+    /**
+     * Objective of the last selection, i.e. the sum of the scores of the selected features when
+     * they were chosen (||P_S Y||_F^2), and its number of distributed rounds.
+     */
+    private double objective;
+    private int rounds;
+
+    /**
+     * Score of each feature of the last selection when it was chosen, and earlier results for the
+     * same data and options.
+     */
+    private List<Double> scores;
+    private SelectionCache cache;
+
+    /**
+     * Fingerprint of the input data and the options that change the selection, which identify
+     * the checkpoint of a selection, for the configured selection and for strict greedy.
+     */
+    private String fingerprint;
+    private String options;
+    private String greedyOptions;
+
+    /**
+     * Whether the strict greedy run that a batched selection is compared with is running. Its
+     * features are not given to the selection listeners, and it does not start from the cache,
+     * which holds the batched selection.
+     */
+    private boolean comparisonRun = false;
 
     /**
      * Initiate input file name to Internet Advertisements dataset
@@ -43,44 +84,100 @@ public class AdsInputReader extends FSInputReader
      */
     public void process(int loopNumber, String outputName, String datasetName, String bucketName)
     {
-        /* define number of original features in the dataset */
-        int numberOfFeatures;
+        if(getConfig().getListenerFile() != null) {
+            try {
+                addSelectionListener(new SelectionFileSink(getConfig().getListenerFile()));
+            } catch(IOException e) {
+                System.out.println("Cannot open " + getConfig().getListenerFile() + ": " + e);
+            }
+        }
 
-        if(datasetName.contains("dorothea")) {
-            numberOfFeatures = DOROTHEA_FEATURE_SIZE;
+        /* parse the input once and profile it: number of features, classes and storage */
+        getMetrics().begin("ingest");
+        JavaRDD<PartitionBuilder> partitions;
+
+        if(getBinaryDataset() != null) {
+            partitions = parse(getBinaryDataset());
         } else {
-            numberOfFeatures = ADS_FEATURE_SIZE;
+            partitions = parse(getRawData());
         }
 
-        bcFeatures = getSparkContext().broadcast(numberOfFeatures);
-
-        /* read data from input file */
-        JavaRDD<List<String[]>> rawData = getRawData().mapPartitions(iterator -> {
-            List<String[]> list = new ArrayList<>();
+        DatasetProfile profile = partitions.treeAggregate(new DatasetProfile(),
+                (total, builder) -> total.merge(builder.getProfile()), (a, b) -> a.merge(b), getConfig().getTreeDepth());
+        System.out.println(profile);
+
+        // prune features that cannot contribute, the greedy loop only sees the kept ones
+        getMetrics().begin("classes");
+        liveColumns = getMetrics().onDriver(() -> profile.getLiveColumns(getConfig()));
+        int numberOfFeatures = liveColumns.length;
+        bcFeatures = getMetrics().broadcast(numberOfFeatures);
+        System.out.println("# features after pruning: " + numberOfFeatures + " / " + profile.getColumns());
+
+        int labelClasses[] = getLabelClasses(profile.getLabels());
+        setClassCounts(profile.getLabels(), profile.getClassCounts(), labelClasses);
+        getMetrics().begin("build");
+        buildXYMatrix(partitions, profile, labelClasses);
+        cache = SelectionCache.open(getConfig(), getSparkContext().hadoopConfiguration(), profile, labelClasses);
+        fingerprint = profile.getFingerprint();
+        options = SelectionCache.getOptions(getConfig(), labelClasses, false);
+        greedyOptions = SelectionCache.getOptions(getConfig(), labelClasses, true);
+
+        Set<Integer> selectedFeatures;
+        boolean gramFits = GramStatistics.getSize(numberOfFeatures) <= getConfig().getGramMaxBytes();
+
+        if(cache.covers(loopNumber)) {
+            // a prefix of a longer selection is the selection for this k
+            int size = Math.min(loopNumber, cache.getSelected().size());
+            selectedFeatures = new LinkedHashSet<>(cache.getSelected().subList(0, size));
+
+            for(int i = 0; i < size; i++) {
+                notifySelected(i + 1, cache.getSelected().get(i), cache.getScores().get(i), System.currentTimeMillis() - getMetrics().getStartTime());
+            }
 
-            while(iterator.hasNext()){
-                list.add(iterator.next().split(" "));
+            System.out.println("Total selected indexes: " + size + " / " + loopNumber + " from the cache");
+        } else {
+            if(getConfig().isIncremental() && getConfig().useFeatureShards(numberOfFeatures, profile.getRows(), gramFits)) {
+                int numberOfShards = getConfig().getNumberOfShards() > 0 ? getConfig().getNumberOfShards() : xyMatrix.partitions().size();
+                getMetrics().begin("scoring");
+                FeatureShardedSelection selection = new FeatureShardedSelection(getMetrics(), xyMatrix, numberOfFeatures,
+                        numberOfShards, responses, getConfig().isLazy());
+                SelectionCheckpoint checkpoint = openCheckpoint("shards", loopNumber);
+                selectedFeatures = new LinkedHashSet<>(selection.select(loopNumber, checkpoint));
+                finish(checkpoint);
+                System.out.println("Total selected indexes: " + selectedFeatures.size() + " / " + loopNumber);
+            } else if(getConfig().isIncremental() && gramFits) {
+                selectedFeatures = getBestFeatures(computeGramStatistics(), loopNumber);
+            } else {
+                selectedFeatures = getBestFeatures(computeFeatureScores(), loopNumber);
             }
 
-            return Collections.singleton(list);
-        });
+            // a selection that ended early holds the result for every larger k
+            cache.store(new ArrayList<>(selectedFeatures), scores.subList(0, selectedFeatures.size()),
+                    selectedFeatures.size() < loopNumber);
+        }
 
-        countClasses(rawData);
-        DoubleMatrix score = computeFeatureScores(rawData, bcFeatures, bcInstances);
-        Set<Integer> selectedFeatures = getBestFeatures(score, loopNumber);
-        DoubleMatrix subMatrix = getSubMatrix(selectedFeatures);
+        for(SelectionListener listener : getSelectionListeners()) {
+            listener.selectionFinished(selectedFeatures.size());
+        }
 
-        System.out.println("Selected indexes: " + selectedFeatures);
+        System.out.println("Selected indexes: " + toOriginalIndexes(selectedFeatures));
 
         /* write output to file and statistics */
         try {
-            write(subMatrix, bcInstances, outputName);
-            uploadFile("output/" + outputName, "text/plain", new File(outputName), bucketName);
+            getMetrics().begin("write");
+            write(selectedFeatures, outputName);
+
+            // "none" or an empty name keeps the output local
+            if(bucketName != null && !bucketName.isEmpty() && !bucketName.equals("none")) {
+                getMetrics().begin("upload");
+                upload(outputName, bucketName);
+            }
         } catch(Exception e) {
             e.printStackTrace();
         }
 
-        printStats(bcInstances, subMatrix.columns, subMatrix.rows);
+        getMetrics().close();
+        printStats(selectedFeatures.size(), profile.getRows());
 
     }
 
@@ -105,9 +202,21 @@ public class AdsInputReader extends FSInputReader
             String name, String contentType, File file, String bucketName)
             throws IOException, GeneralSecurityException
     {
-        InputStreamContent contentStream = new InputStreamContent(contentType, new FileInputStream(file));
+        try(InputStream in = new FileInputStream(file)) {
+            uploadFile(name, contentType, in, file.length(), bucketName);
+        }
+    }
+
+    /**
+     * Uploads data from a stream to an object in a bucket, see above.
+     */
+    public static void uploadFile(
+            String name, String contentType, InputStream in, long length, String bucketName)
+            throws IOException, GeneralSecurityException
+    {
+        InputStreamContent contentStream = new InputStreamContent(contentType, in);
         // Setting the length improves upload performance
-        contentStream.setLength(file.length());
+        contentStream.setLength(length);
         StorageObject objectMetadata = new StorageObject()
                 // Set the destination object name
                 .setName(name)
@@ -124,299 +233,618 @@ public class AdsInputReader extends FSInputReader
     }
 
     /**
-     * Count number of instances in each class and compute the values for response matrix.
-     * @param logData input data
+     * Map the labels to classes. Ads and Dorothea are two-class problems: label "1" is the positive
+     * class (class 0), all other labels are negative (class 1).
+     * @param labels labels of the dataset in ascending order
+     * @return class of each label, classes are numbered from 0
      */
-    private void countClasses(JavaRDD<List<String[]>> logData)
+    protected int[] getLabelClasses(double[] labels)
     {
-        /* map values in class column into pair of <class, 1> */
-        JavaPairRDD<String, Integer> pairs = logData.mapPartitionsToPair(iterator -> {
-            List<Tuple2<String, Integer>> list = new ArrayList<>();
-            Map<String, Integer> map = new HashMap<>();
-
-            while(iterator.hasNext()){
-                List<String[]> temp = iterator.next();
-                for(String[] str : temp) {
-                    String label = str[0];
-
-                    int size = 0;
-                    if (map.containsKey(label)) {
-                        size = map.get(label) + 1;
-                    }
-
-                    map.put(label, size);
-                }
-
-                for(Map.Entry<String, Integer> entry : map.entrySet()){
-                    list.add(new Tuple2<>(entry.getKey(), entry.getValue()));
-                }
-            }
+        int labelClasses[] = new int[labels.length];
 
-            return list;
-        });
+        for(int c = 0; c < labels.length; c++) {
+            labelClasses[c] = labels[c] == 1.0 ? 0 : 1;
+        }
 
-        // count number of items/points per class
-        JavaPairRDD<String, Integer> counts = pairs.reduceByKey((a, b) -> a + b);
-        List<Tuple2<String, Integer>> list = counts.collect();
+        return labelClasses;
+    }
 
-        double[] instances = new double[7];
+    /**
+     * Compute the response table from the number of instances in each class. The output label of
+     * a class is its first label.
+     * @param labels labels of the dataset in ascending order
+     * @param labelCounts number of instances of each label
+     * @param labelClasses class of each label
+     */
+    private void setClassCounts(double[] labels, int[] labelCounts, int[] labelClasses)
+    {
+        int numberOfClasses = 0;
 
-        // specific for ad/nonad classes
-        if(list.get(0)._1().equals("1")){
-            instances[1] = list.get(0)._2(); // number of positive data points
-            instances[2] = list.get(1)._2(); // number of negative data points
-        } else{
-            instances[1] = list.get(1)._2(); // number of positive data points
-            instances[2] = list.get(0)._2(); // number of negative data points
+        for(int labelClass : labelClasses) {
+            numberOfClasses = Math.max(numberOfClasses, labelClass + 1);
         }
 
-        // as formula (4) in the paper.
-        instances[0] = instances[1] + instances[2]; // number of instances = positive + negative
+        classCounts = new int[numberOfClasses];
+        classLabels = new double[numberOfClasses];
+        Arrays.fill(classLabels, Double.NaN);
 
-        // yPos[0] = instances[3], yPos[1] = instances[4]
-        instances[4] = - Math.sqrt(instances[1]) / instances[0];
-        instances[3] = 1.0 / Math.sqrt(instances[1]) + instances[4];
+        for(int c = 0; c < labels.length; c++) {
+            classCounts[labelClasses[c]] += labelCounts[c];
 
-        // yNeg[0] = instances[5], yNeg[1] = instances[6]
-        instances[6] = - Math.sqrt(instances[2]) / instances[0];
-        instances[5] = 1.0 / Math.sqrt(instances[2]) + instances[6];
+            if(Double.isNaN(classLabels[labelClasses[c]])) {
+                classLabels[labelClasses[c]] = labels[c];
+            }
+        }
 
-        bcInstances = getSparkContext().broadcast(instances);
+        // one column of Y per class as formula (4) in the paper
+        responses = ResponseMatrixValue.getResponseTable(classCounts);
     }
 
-
     /**
-     * Compute feature scores E and v based on algorithm step 1-3
-     * X (features matrix) consists of features.
-     * Y (response matrix) consists of response calculated from formula (4) in the paper using class labels
+     * Parse the input data into the rows of each partition, profiled while they are parsed.
      * @param logData input data
-     * @return s scores for each features in a feature matrix
      */
-    private DoubleMatrix computeFeatureScores(JavaRDD<List<String[]>> logData, Broadcast bcFeatures, Broadcast<double[]> bcInstances)
+    private JavaRDD<PartitionBuilder> parse(JavaRDD<String> logData)
     {
-        double[] instances = bcInstances.getValue();
-        Double[] bcYPos = new Double[]{instances[3], instances[4]};
-        Double[] bcYNeg = new Double[]{instances[5], instances[6]};
-
-        // map values into pairs of X (features matrix) and Y (response matrix)
-        xyMatrix = logData.mapPartitions(iterator -> {
-            ArrayList<Double[]> featureMatrix = new ArrayList<>();
-            ArrayList<Double[]> responseMatrix = new ArrayList<>();
+        return logData.mapPartitionsWithIndex((partition, iterator) -> {
+            PartitionBuilder builder = new PartitionBuilder((long) partition << 32);
+            LibSVMParser parser = new LibSVMParser();
 
             while(iterator.hasNext()) {
-                List<String[]> list = iterator.next();
-                for(String[] splittedLine : list) {
-                    featureMatrix.add(getFeatures(splittedLine, bcFeatures));
-                    if (splittedLine[0].equals("1")) {
-                        responseMatrix.add(bcYPos);
-                    } else {
-                        responseMatrix.add(bcYNeg);
-                    }
+                if(parser.parse(iterator.next())) {
+                    builder.addRow(parser);
                 }
             }
 
-            DoubleMatrix x = new DoubleMatrix(FSUtil.convertToDoubleArray(featureMatrix));
-            DoubleMatrix y = new DoubleMatrix(FSUtil.convertToDoubleArray(responseMatrix));
+            return Collections.singleton(builder).iterator();
+        }, false).cache();
+    }
 
-            return Collections.singleton(new XYMatrix(x, y));
-        }).cache();
+    /**
+     * Parse the binary input like parse for text input. Each partition reads its range of rows from the file.
+     * @param dataset input data
+     */
+    private JavaRDD<PartitionBuilder> parse(BinaryDataset dataset)
+    {
+        return dataset.getRowRanges(getSparkContext(), getNumberOfPartitions()).map(range -> {
+            PartitionBuilder builder = new PartitionBuilder(range[0]);
+            BinaryRowReader reader = dataset.read(range[0], range[1]);
 
-        JavaRDD<FeatureScore> fScoreMatrix = xyMatrix.map(matrix -> {
-            DoubleMatrix x = matrix.getX();
-            DoubleMatrix y = matrix.getY();
+            while(reader.next()) {
+                builder.addRow(reader);
+            }
 
-            DoubleMatrix ones = DoubleMatrix.ones(x.getRows());
+            return builder;
+        }).cache();
+    }
 
-            return new FeatureScore(y.transpose().mmul(x), ones.transpose().mmul(x.mul(x)));
-        });
+    /**
+     * Map the parsed partitions into blocks of X (features matrix) and classes.
+     * X consists of features. The class of a data point selects its row of Y (response matrix),
+     * calculated from formula (4) in the paper, in the response table. The profile gives the
+     * kept features and the storage of the blocks.
+     * @param partitions parsed partitions
+     * @param profile profile of the input data
+     * @param labelClasses class of each label
+     */
+    private void buildXYMatrix(JavaRDD<PartitionBuilder> partitions, DatasetProfile profile, int[] labelClasses)
+    {
+        int columns[] = liveColumns;
+        int numberOfClasses = responses.rows;
+        double labels[] = profile.getLabels();
+        PartitionBuilder.Storage storage = profile.getStorage(getConfig(), columns);
+
+        xyMatrix = partitions.map(builder -> builder.build(columns, labels, labelClasses, numberOfClasses, storage))
+                .persist(getConfig().getStorageLevel());
+
+        // materialize the blocks before the parsed rows and the text are dropped
+        xyMatrix.count();
+        partitions.unpersist();
+        releaseRawData();
+    }
 
-        FeatureScore totalScore = fScoreMatrix.reduce((a, b) -> a.add(b));
+    /**
+     * Compute feature scores E and v based on algorithm step 1-3, from the column sums per class
+     * and v gathered in one pass.
+     * @return E matrix and v vector of all features
+     */
+    private FeatureScore computeFeatureScores()
+    {
+        getMetrics().begin("scoring");
+        ClassStatistics statistics = xyMatrix.treeAggregate(new ClassStatistics(),
+                (total, matrix) -> total.add(matrix), (a, b) -> a.merge(b), getConfig().getTreeDepth());
+
+        return getMetrics().onDriver(() -> statistics.getFeatureScore(responses));
+    }
 
-        DoubleMatrix e = totalScore.getEMatrix();
-        DoubleMatrix v = totalScore.getVMatrix();
-        DoubleMatrix s = DoubleMatrix.ones(e.getRows()).transpose().mmul(e.mul(e));
+    /**
+     * Compute the Gram matrix X^T X together with E in one pass, so that all greedy
+     * iterations can run on the driver without further Spark jobs.
+     * @return E matrix and v vector of all features
+     */
+    private FeatureScore computeGramStatistics()
+    {
+        getMetrics().begin("scoring");
+        GramStatistics statistics = xyMatrix.treeAggregate(new GramStatistics(),
+                (total, matrix) -> total.add(matrix), (a, b) -> a.merge(b), getConfig().getTreeDepth());
 
-        // Element-wise division on matrix = div ("divi" will replace the original matrix)
-        s = s.div(v);
+        gramMatrix = statistics.getGramMatrix();
 
-        return s;
+        return getMetrics().onDriver(() -> statistics.getFeatureScore(responses));
     }
 
     /**
      * Select best features based on precomputed scores.
-     * @param score precomputed scores
-     * @return index of selected features
+     * @param score E matrix and v vector of all features
+     * @return index of selected features in the order of selection
      */
-    private Set<Integer> getBestFeatures(DoubleMatrix score, int loopNumber)
+    private Set<Integer> getBestFeatures(FeatureScore score, int loopNumber)
     {
-        Set<Integer> set = new HashSet<>();
-        int maxIndex = score.argmax(), k = loopNumber, l = 1;
-        set.add(maxIndex);
+        if(!getConfig().isIncremental()) {
+            return getBestFeaturesRecomputed(score, loopNumber);
+        }
 
-        DoubleMatrix cAcc = null;
+        int batchSize = getConfig().getBatchSize();
 
-        while(l < k)
+        if(batchSize <= 1) {
+            return getBestFeaturesGreedy(score, loopNumber);
+        }
+
+        Set<Integer> set = getBestFeaturesBatched(score, loopNumber, batchSize);
+
+        if(getConfig().reportBatchQuality()) {
+            double batchObjective = objective;
+            int batchRounds = rounds;
+            List<Double> batchScores = scores;
+            comparisonRun = true;
+            Set<Integer> greedy = getBestFeaturesGreedy(score, loopNumber);
+            comparisonRun = false;
+
+            printBatchReport(new ArrayList<>(set), batchObjective, batchRounds, new ArrayList<>(greedy));
+            scores = batchScores;
+        }
+
+        return set;
+    }
+
+    /**
+     * Select best features one at a time (strict greedy), with one distributed pass per iteration.
+     * @param score E matrix and v vector of all features
+     * @return index of selected features in the order of selection
+     */
+    private Set<Integer> getBestFeaturesGreedy(FeatureScore score, int loopNumber)
+    {
+        Set<Integer> set = new LinkedHashSet<>();
+        GreedySelection selection = new GreedySelection(score, getConfig().isLazy());
+        SelectionCheckpoint checkpoint = openCheckpoint("greedy", loopNumber);
+        List<Integer> saved = getSavedPrefix(checkpoint, loopNumber);
+        int maxIndex, k = loopNumber;
+
+        if(saved.isEmpty()) {
+            maxIndex = score.computeScores().argmax();
+            set.add(maxIndex);
+            checkpoint.select(maxIndex, selection.getScore(maxIndex));
+            objective = getValidScore(selection, maxIndex);
+            rounds = 0;
+        } else {
+            // every saved feature but the last one was added with its cross-products
+            List<double[]> savedCrossProducts = getSavedCrossProducts(checkpoint, saved.size() - 1);
+
+            for(int i = 0; i < saved.size() - 1; i++) {
+                selection.add(saved.get(i), new DoubleMatrix(savedCrossProducts.get(i)));
+            }
+
+            set.addAll(saved);
+            maxIndex = saved.get(saved.size() - 1);
+            objective = checkpoint.getObjective();
+            rounds = checkpoint.getRounds();
+        }
+
+        while(set.size() < k)
         {
-            Broadcast broadcastIdx = getSparkContext().broadcast(maxIndex);
-
-            // step 8
-            JavaRDD<DoubleMatrix> ci = xyMatrix.map(matrix -> {
-                DoubleMatrix x = matrix.getX();
-                DoubleMatrix f = x.getColumn((int)broadcastIdx.value());
-                DoubleMatrix c = x.transpose().mmul(f);
-                return c;
+            // step 8-9: the only distributed pass per iteration
+            getMetrics().begin("iteration", set.size() + 1);
+            DoubleMatrix crossProducts = getCrossProducts(maxIndex);
+            int added = maxIndex;
+            checkpoint.addCrossProducts(crossProducts.toArray());
+            rounds++;
+
+            // step 10-11 on the driver
+            maxIndex = getMetrics().onDriver(() -> {
+                selection.add(added, crossProducts);
+                return selection.nextFeature();
             });
 
-            // step 9
-            if(cAcc == null) {
-                cAcc = ci.reduce((a, b) -> a.add(b));
-            } else{
-                cAcc = DoubleMatrix.concatHorizontally(cAcc, ci.reduce((a, b) -> a.add(b)));
+            if(maxIndex < 0){// to stop when none of the remaining features has a valid score
+                break;
             }
 
-            int selectedIndexes[] = new int[l];
-            int unSelectedIndexes[] = new int[cAcc.rows - l];
+            objective += getValidScore(selection, maxIndex);
+            set.add(maxIndex);
+            checkpoint.select(maxIndex, selection.getScore(maxIndex));
+            checkpoint.setProgress(objective, rounds);
+            checkpoint.checkpointIfDue();
+        }
 
-            int i = 0, j = 0;
+        finish(checkpoint);
+        System.out.println("Total selected indexes: " + set.size() + " / " + k);
 
-            for(Integer idx : set){
-                selectedIndexes[i++] = idx;
-            }
+        return set;
+    }
 
-            System.out.println(set.size() + " " + cAcc.rows + " " + l + " " + unSelectedIndexes.length);
+    /**
+     * Select best features in batches: every round takes the b features with the highest scores
+     * and computes their cross-products in one distributed pass, so k features take about k/b
+     * rounds. With correction the features of a round are chosen greedily on the driver with
+     * the scores updated after each addition, and the round ends early as soon as the best
+     * feature is not one of the batch; this gives the same result as strict greedy. Without
+     * correction all b features are added in the order of their scores at the start of the round.
+     * @param score E matrix and v vector of all features
+     * @param batchSize number of features per round (b)
+     * @return index of selected features in the order of selection
+     */
+    private Set<Integer> getBestFeaturesBatched(FeatureScore score, int loopNumber, int batchSize)
+    {
+        Set<Integer> set = new LinkedHashSet<>();
+        GreedySelection selection = new GreedySelection(score, getConfig().isLazy());
+        boolean correction = getConfig().useBatchCorrection();
+        SelectionCheckpoint checkpoint = openCheckpoint("batch", loopNumber);
+        List<Integer> saved = getSavedPrefix(checkpoint, loopNumber);
+
+        // all saved features were added with their cross-products
+        List<double[]> savedCrossProducts = getSavedCrossProducts(checkpoint, saved.size());
+
+        for(int i = 0; i < saved.size(); i++) {
+            selection.add(saved.get(i), new DoubleMatrix(savedCrossProducts.get(i)));
+            set.add(saved.get(i));
+        }
 
-            for(i = 0; i < cAcc.rows; i++){
-                if(!set.contains(i)) {
-                    unSelectedIndexes[j++] = i;
-                }
-            }
+        objective = checkpoint.getObjective();
+        rounds = checkpoint.getRounds();
 
-            DoubleMatrix s = getNextScore(selectedIndexes, unSelectedIndexes, xyMatrix);
-            maxIndex = s.argmax();
+        while(set.size() < loopNumber)
+        {
+            getMetrics().begin("iteration", rounds + 1);
+            int candidates[] = getMetrics().onDriver(() -> selection.nextFeatures(Math.min(batchSize, loopNumber - set.size())));
 
-            if(set.contains(maxIndex)){
-                set.add(getIndexOfMaxValue(set, s));
-            } else {
-                set.add(maxIndex);
+            if(candidates.length == 0) {// to stop when none of the remaining features has a valid score
+                break;
             }
 
-            l++;
+            // step 8 for the whole batch: the only distributed pass per round
+            DoubleMatrix crossProducts = getCrossProducts(candidates);
+            Map<Integer, Integer> batch = new HashMap<>();
+            rounds++;
 
-            if(l % 50 == 0){
-                long endTime = System.currentTimeMillis();
-                long totalTime = endTime - startTime;
-                System.out.println("Time to proceed : " + l + " data = " +  totalTime/1000 + " s " + totalTime%1000 + " ms");
+            for(int c = 0; c < candidates.length; c++) {
+                batch.put(candidates[c], c);
             }
 
-            if(set.size() != l){// to stop when the rest of the values are the same
-                break;
+            int next = candidates[0], position = 0;
+
+            while(next >= 0)
+            {
+                // step 9-11 on the driver
+                DoubleMatrix column = crossProducts.getColumn(batch.remove(next));
+                objective += getValidScore(selection, next);
+                checkpoint.select(next, selection.getScore(next));
+                checkpoint.addCrossProducts(column.toArray());
+                set.add(next);
+                int added = next;
+                getMetrics().onDriver(() -> selection.add(added, column));
+
+                if(set.size() == loopNumber || batch.isEmpty()) {
+                    break;
+                }
+
+                if(correction) {
+                    next = getMetrics().onDriver(selection::nextFeature);
+                    next = batch.containsKey(next) ? next : -1;
+                } else {
+                    next = candidates[++position];
+                }
             }
+
+            checkpoint.setProgress(objective, rounds);
+            checkpoint.checkpointIfDue();
         }
 
-        System.out.println("Total selected indexes: " + set.size() + " / " + k);
+        finish(checkpoint);
+        System.out.println("Total selected indexes: " + set.size() + " / " + loopNumber + " in " + rounds + " rounds");
 
         return set;
     }
 
-    private int getIndexOfMaxValue(Set<Integer> set, DoubleMatrix s){
-        int idx = 0;
-        double value = 0;
+    /**
+     * Map indexes of xyMatrix back to the indexes of the features in the input.
+     * @param ids indexes of features in xyMatrix
+     * @return original indexes in the same order
+     */
+    private Set<Integer> toOriginalIndexes(Set<Integer> ids)
+    {
+        Set<Integer> original = new LinkedHashSet<>();
+
+        for(int id : ids) {
+            original.add(liveColumns[id]);
+        }
+
+        return original;
+    }
+
+    /**
+     * Open the checkpoint of a selection loop (spark.fs.checkpoint.path). The saved features are
+     * given to the selection listeners, and the checkpoint gives them the following ones.
+     * @param layout selection loop
+     * @param loopNumber number of features to be selected
+     * @return saved or empty state
+     */
+    private SelectionCheckpoint openCheckpoint(String layout, int loopNumber)
+    {
+        int rows = 0;
+
+        for(int count : classCounts) {
+            rows += count;
+        }
+
+        SelectionCheckpoint checkpoint = SelectionCheckpoint.open(getConfig(), getSparkContext().hadoopConfiguration(),
+                fingerprint, comparisonRun ? greedyOptions : options, layout, loopNumber, liveColumns.length, rows);
 
-        for(int i = 0; i < s.columns; i++){
-            if(!set.contains(i) && s.get(0, i) >= value){
-                value = s.get(0, i);
-                idx = i;
+        // continue a selection that is longer in the cache than in the checkpoint
+        if(!comparisonRun && cache.getSelected().size() > checkpoint.getSelected().size()) {
+            checkpoint.seed(cache.getSelected(), cache.getScores());
+        }
+
+        if(!comparisonRun) {
+            List<Integer> saved = checkpoint.getSelected();
+
+            for(int i = 0; i < Math.min(saved.size(), loopNumber); i++) {
+                notifySelected(i + 1, saved.get(i), checkpoint.getScores().get(i), System.currentTimeMillis() - getMetrics().getStartTime());
             }
+
+            checkpoint.setListener(this::notifySelected, getMetrics().getStartTime());
         }
 
-        return idx;
+        return checkpoint;
     }
 
     /**
-     * Iteratively update feature score based on selected and unselected features.
-     * @param selectedIndexes index of selected features
-     * @param unselectedIndexes index of unselected features
-     * @param logData input file
-     * @return matrix of feature scores
+     * Give a selected feature to the selection listeners.
+     * @param rank position in the selection, starting at 1
+     * @param id index of the feature in xyMatrix
+     * @param score score of the feature when it was chosen
+     * @param elapsed milliseconds since the start of the run
      */
-    private DoubleMatrix getNextScore(int selectedIndexes[], int unselectedIndexes[], JavaRDD<XYMatrix> logData)
+    private void notifySelected(int rank, int id, double score, long elapsed)
     {
-        Broadcast broadcastSelectedIndexes = getSparkContext().broadcast(selectedIndexes);
-        Broadcast broadcastUnselectedIndexes = getSparkContext().broadcast(unselectedIndexes);
+        for(SelectionListener listener : getSelectionListeners()) {
+            listener.featureSelected(rank, liveColumns[id], score, elapsed);
+        }
+    }
 
-        // step 10
-        JavaRDD<FeatureMatrices> temp = logData.map(matrix -> {
-            DoubleMatrix x = matrix.getX();
-            DoubleMatrix y = matrix.getY();
+    /**
+     * Get the cross-products of the first saved features. Features taken from the cache have
+     * none, they are computed in one distributed pass.
+     * @param checkpoint saved state
+     * @param count number of features whose cross-products are needed
+     * @return X^T f of the saved features, in the order of selection
+     */
+    private List<double[]> getSavedCrossProducts(SelectionCheckpoint checkpoint, int count)
+    {
+        int known = checkpoint.getCrossProducts().size();
+
+        if(count > 0) {
+            getMetrics().begin("resume");
+        }
 
-            DoubleMatrix x1 = x.get(new IntervalRange(0, x.getRows()), new IndicesRange((int[])broadcastSelectedIndexes.getValue()));
-            DoubleMatrix x2 = x.get(new IntervalRange(0, x.getRows()), new IndicesRange((int[])broadcastUnselectedIndexes.getValue()));
+        if(known < count) {
+            int missing[] = new int[count - known];
 
-            DoubleMatrix ones = DoubleMatrix.ones(x.getRows());
+            for(int i = 0; i < missing.length; i++) {
+                missing[i] = checkpoint.getSelected().get(known + i);
+            }
 
-            DoubleMatrix matrixA = x1.transpose().mmul(x1);
-            DoubleMatrix matrixCY1 = y.transpose().mmul(x1);
-            DoubleMatrix matrixCY2 = y.transpose().mmul(x2);
-            DoubleMatrix matrixC12 = x1.transpose().mmul(x2);
-            DoubleMatrix matrixV2 = ones.transpose().mmul(x2.mul(x2));
+            DoubleMatrix crossProducts = getCrossProducts(missing);
 
-            return new FeatureMatrices(matrixA, matrixCY1, matrixCY2, matrixC12, matrixV2);
-        });
+            for(int c = 0; c < missing.length; c++) {
+                checkpoint.addCrossProducts(crossProducts.getColumn(c).toArray());
+            }
 
-        // step 11
-        FeatureMatrices featureMatrices = temp.reduce((a, b) -> a.add(b));
-        DoubleMatrix matrixB = Solve.pinv(featureMatrices.getMatrixA()).mmul(featureMatrices.getMatrixC12());
-        DoubleMatrix matrixH = featureMatrices.getMatrixCY1().mmul(matrixB);
-        DoubleMatrix matrixG = featureMatrices.getMatrixCY2().sub(matrixH);
+            checkpoint.setProgress(checkpoint.getObjective(), checkpoint.getRounds() + 1);
+        }
+
+        return checkpoint.getCrossProducts();
+    }
+
+    /**
+     * Keep the scores of a finished selection and remove its checkpoint.
+     * @param checkpoint state of the selection
+     */
+    private void finish(SelectionCheckpoint checkpoint)
+    {
+        scores = new ArrayList<>(checkpoint.getScores());
+        checkpoint.finish();
+    }
+
+    /**
+     * Get the saved features of a checkpoint, at most as many as are to be selected. Greedy
+     * selection is the same for every k up to its last feature, so a longer run can be cut.
+     * @param checkpoint saved or empty state
+     * @param loopNumber number of features to be selected
+     * @return saved features in the order of selection
+     */
+    private static List<Integer> getSavedPrefix(SelectionCheckpoint checkpoint, int loopNumber)
+    {
+        List<Integer> saved = checkpoint.getSelected();
+        return new ArrayList<>(saved.subList(0, Math.min(saved.size(), loopNumber)));
+    }
 
-        DoubleMatrix g = DoubleMatrix.ones(matrixG.getRows()).transpose().mmul(matrixG.mul(matrixG));
-        DoubleMatrix w = featureMatrices.getMatrixV2().sub(DoubleMatrix.ones(
-                featureMatrices.getMatrixC12().getRows()).transpose().mmul(
-                featureMatrices.getMatrixC12().mul(matrixB)));
+    private static double getValidScore(GreedySelection selection, int index)
+    {
+        double score = selection.getScore(index);
+        return Double.isNaN(score) ? 0.0 : score;
+    }
 
-        DoubleMatrix s = g.div(w);
+    /**
+     * Compare a batched selection with strict greedy: number of rounds, common features, length
+     * of the common prefix and objective (||P_S Y||_F^2, higher is better).
+     * @param batch features selected in batches
+     * @param batchObjective objective of the batched selection
+     * @param batchRounds number of rounds of the batched selection
+     * @param greedy features selected by strict greedy, whose objective and rounds are the last ones
+     */
+    private void printBatchReport(List<Integer> batch, double batchObjective, int batchRounds, List<Integer> greedy)
+    {
+        Set<Integer> common = new HashSet<>(batch);
+        common.retainAll(greedy);
+        int prefix = 0;
 
-        return s;
+        while(prefix < Math.min(batch.size(), greedy.size()) && batch.get(prefix).equals(greedy.get(prefix))) {
+            prefix++;
+        }
+
+        System.out.println("Batch quality (size " + getConfig().getBatchSize() + ", correction "
+                + getConfig().useBatchCorrection() + "):");
+        System.out.println("  rounds: " + batchRounds + " (strict greedy: " + rounds + ")");
+        System.out.println("  common features: " + common.size() + " / " + greedy.size() + ", same order for the first " + prefix);
+        System.out.println("  objective: " + batchObjective + " (strict greedy: " + objective + ", ratio: " + batchObjective / objective + ")");
     }
 
     /**
-     * Get all features per data point
-     * @param cells cells per row in input file
-     * @return features in a double array
+     * Select best features by recomputing the matrices of step 10 from all partitions in every iteration.
+     * @param score E matrix and v vector of all features
+     * @return index of selected features in the order of selection
      */
-    private static Double[] getFeatures(String cells[], Broadcast bcNumOfFeatures)
+    private Set<Integer> getBestFeaturesRecomputed(FeatureScore score, int loopNumber)
     {
+        Set<Integer> set = new LinkedHashSet<>();
+        SelectionCheckpoint checkpoint = openCheckpoint("recomputed", loopNumber);
+        List<Integer> saved = getSavedPrefix(checkpoint, loopNumber);
+        ResidentSelection selection = new ResidentSelection(getMetrics(), liveColumns.length);
+        int maxIndex, k = loopNumber, l;
+
+        if(saved.isEmpty()) {
+            DoubleMatrix firstScores = score.computeScores();
+            maxIndex = firstScores.argmax();
+            set.add(maxIndex);
+            selection.add(maxIndex);
+            checkpoint.select(maxIndex, firstScores.get(maxIndex));
+        } else {
+            // cross-products of every saved feature but the last one, to keep the checkpoint complete
+            getSavedCrossProducts(checkpoint, saved.size() - 1);
+            set.addAll(saved);
+            saved.forEach(selection::add);
+            maxIndex = saved.get(saved.size() - 1);
+        }
+
+        l = set.size();
+
+        while(l < k)
+        {
+            // step 9
+            getMetrics().begin("iteration", l + 1);
+            DoubleMatrix crossProducts = getCrossProducts(maxIndex);
+            checkpoint.addCrossProducts(crossProducts.toArray());
 
-        Double features[] = new Double[(Integer)bcNumOfFeatures.value()];
-        int j = 1;
+            int selectedIndexes[] = selection.getSelected();
+            int unSelectedIndexes[] = selection.getUnselected();
 
-        for(int i = 1; i < cells.length; i++) {
-            String temp[] = cells[i].split(":");
-            int featureId = Integer.parseInt(temp[0]);
+            DoubleMatrix s = getNextScore(selection, selectedIndexes, unSelectedIndexes, score, xyMatrix);
+            maxIndex = GreedySelection.getIndexOfMaxValue(s, unSelectedIndexes);
 
-            while(j < featureId){
-                features[j-1] = 0.0;
-                j++;
+            if(maxIndex < 0){// to stop when none of the remaining features has a valid score
+                break;
             }
 
-            features[j-1] = Double.parseDouble(temp[1]);
-            j++;
+            set.add(maxIndex);
+            selection.add(maxIndex);
+            checkpoint.select(maxIndex, s.get(Arrays.binarySearch(unSelectedIndexes, maxIndex)));
+            checkpoint.checkpointIfDue();
+            l++;
         }
 
-        while(j <= (Integer)bcNumOfFeatures.value()) {
-            features[j-1] = 0.0;
-            j++;
+        selection.close();
+        finish(checkpoint);
+        System.out.println("Total selected indexes: " + set.size() + " / " + k);
+
+        return set;
+    }
+
+    /**
+     * Compute X^T f for a selected feature f over all partitions (step 8), or take it from
+     * the Gram matrix if it was computed.
+     * @param index index of the selected feature
+     * @return column vector with the cross-product of f with every feature
+     */
+    private DoubleMatrix getCrossProducts(int index)
+    {
+        if(gramMatrix != null) {
+            return gramMatrix.getColumn(index);
+        }
+
+        // the index is sent with the tasks, a broadcast per iteration would stay on the executors
+        return xyMatrix.treeAggregate(new DoubleMatrix(bcFeatures.value()),
+                (total, matrix) -> total.addi(matrix.columnCrossProducts(index)),
+                (a, b) -> a.addi(b), getConfig().getTreeDepth());
+    }
+
+    /**
+     * Compute X^T F for several selected features F in one pass over all partitions (step 8),
+     * or take it from the Gram matrix if it was computed.
+     * @param indexes indexes of the selected features
+     * @return matrix with one row per feature and one column per selected feature
+     */
+    private DoubleMatrix getCrossProducts(int[] indexes)
+    {
+        if(gramMatrix != null) {
+            return gramMatrix.getColumns(indexes);
         }
 
-        return features;
+        return xyMatrix.treeAggregate(new DoubleMatrix(indexes.length, bcFeatures.value()),
+                (total, matrix) -> total.addi(matrix.crossProduct(matrix.getColumns(indexes))),
+                (a, b) -> a.addi(b), getConfig().getTreeDepth()).transpose();
+    }
+
+    /**
+     * Iteratively update feature score based on selected and unselected features. The tasks take
+     * the indexes from the replica of the selection on their executor.
+     * @param selection selected features, kept on the executors
+     * @param selectedIndexes index of selected features
+     * @param unselectedIndexes index of unselected features
+     * @param score E matrix and v vector of all features
+     * @param logData input file
+     * @return matrix of feature scores
+     */
+    private DoubleMatrix getNextScore(ResidentSelection selection, int selectedIndexes[], int unselectedIndexes[],
+                                      FeatureScore score, JavaRDD<FeatureBlock> logData)
+    {
+        ResidentSelection.Update update = selection.getUpdate();
+
+        // step 10
+        FeatureMatrices featureMatrices = logData.treeAggregate(new FeatureMatrices(), (total, matrix) -> {
+            ResidentSelection.Replica replica = update.getReplica();
+
+            return total.add(FeatureMatrices.fromBlock(matrix, replica.getSelected(), replica.getUnselected()));
+        }, (a, b) -> a.add(b), getConfig().getTreeDepth());
+
+        // CY1, CY2 and v2 do not change between iterations, they are taken from E and v
+        featureMatrices.setMatrixCY1(score.getEMatrix().getColumns(selectedIndexes));
+        featureMatrices.setMatrixCY2(score.getEMatrix().getColumns(unselectedIndexes));
+        featureMatrices.setMatrixV2(score.getVMatrix().getColumns(unselectedIndexes));
+
+        // step 11
+
+        return getMetrics().onDriver(featureMatrices::computeScores);
     }
 
     /**
-     * Get the sub matrix of selected features
-     * @param ids indexes of selected features in the original matrix
-     * @return sub matrix with values of selected features
+     * Write the selected features in libsvm format. Every partition projects and formats its own
+     * rows into a part file, which the driver merges into one file unless disabled
+     * (spark.fs.output.merge), so the projected data is never collected on the driver.
+     * @param ids indexes of selected features in xyMatrix
+     * @param outputName output file name (a directory of part files if they are not merged)
+     * @throws IOException if the output cannot be written
      */
-    private DoubleMatrix getSubMatrix(Set<Integer> ids)
+    private void write(Set<Integer> ids, String outputName) throws IOException
     {
         int temp[] = new int[ids.size()];
         int i = 0;
@@ -426,74 +854,101 @@ public class AdsInputReader extends FSInputReader
         }
 
         Arrays.sort(temp);
-        Broadcast broadcastSelectedIndexes = getSparkContext().broadcast(temp);
+        Broadcast<int[]> broadcastSelectedIndexes = getMetrics().broadcast(temp);
+        double labels[] = classLabels;
+
+        JavaRDD<String> lines = xyMatrix.flatMap(matrix -> {
+            DoubleMatrix subMatrix = matrix.getColumns(broadcastSelectedIndexes.getValue());
+            int[] classes = matrix.getClasses();
+            List<String> rows = new ArrayList<>(subMatrix.rows);
 
-        JavaRDD<DoubleMatrix> subMatrix = xyMatrix.map(matrix -> {
-            DoubleMatrix x = matrix.getX();
-            DoubleMatrix x1 = x.get(new IntervalRange(0, x.getRows()), new IndicesRange((int[])broadcastSelectedIndexes.getValue()));
+            for(int r = 0; r < subMatrix.rows; r++) {
+                rows.add(formatRow(labels[classes[r]], subMatrix, r));
+            }
 
-            return DoubleMatrix.concatHorizontally(x1, matrix.getY());
+            return rows;
         });
 
-        DoubleMatrix subMatrixCombined = subMatrix.reduce((a, b) -> DoubleMatrix.concatVertically(a, b));
+        Configuration hadoopConf = getSparkContext().hadoopConfiguration();
+        Path output = new Path(outputName);
+        Path parts = getConfig().mergeOutput() ? new Path(outputName + "-parts") : output;
+        FileSystem fs = parts.getFileSystem(hadoopConf);
+
+        fs.delete(parts, true);
+        lines.saveAsTextFile(parts.toString());
+        broadcastSelectedIndexes.destroy();
 
-        return subMatrixCombined;
+        if(getConfig().mergeOutput()) {
+            FileSystem local = FileSystem.getLocal(hadoopConf);
+            local.delete(output, true);
+            FileUtil.copyMerge(fs, parts, local, output, true, hadoopConf, null);
+        }
     }
 
     /**
-     * To write selected features to a file.
-     * @param subMatrix values of matrix from selected features
-     * @param outputName output file name
-     * @throws Exception
+     * Format a row of the selected features in libsvm format, with the features numbered from 1.
+     * @param label class label of the row
+     * @param subMatrix selected features of a block
+     * @param r row in the block
+     * @return line without line break
      */
-    private void write(DoubleMatrix subMatrix, Broadcast<double[]> bcInstances, String outputName) throws Exception
+    private static String formatRow(double label, DoubleMatrix subMatrix, int r)
     {
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputName))));
-        StringBuffer buffer = new StringBuffer();
+        StringBuilder line = new StringBuilder();
 
-        int column = subMatrix.columns - 2;
-        double[] instances = bcInstances.getValue();
+        if(label == Math.rint(label)) {
+            line.append((long) label);
+        } else {
+            line.append(label);
+        }
 
-        for(int i = 0; i < subMatrix.rows; i++)
-        {
-            // if the value equals to yNeg[0]
-            if(subMatrix.get(i, column) == instances[5]) {
-                buffer.append("0 "); // negative
-            } else {
-                buffer.append("1 "); // positive
+        for(int j = 0; j < subMatrix.columns; j++) {
+            double value = subMatrix.get(r, j);
+
+            if(value != 0) {
+                line.append(' ').append(j + 1).append(':').append(value);
             }
+        }
 
-            int k = 1;
+        return line.toString();
+    }
 
-            for(int j = 0; j < column; j++) {
-                double value = subMatrix.get(i, j);
-                if (value != 0) {
-                    buffer.append(k);
-                    buffer.append(":");
-                    buffer.append(subMatrix.get(i, j));
-                    buffer.append(" ");
+    /**
+     * Upload the output file, or all part files if the output was not merged.
+     * @param outputName output file name
+     * @param bucketName Google Cloud Storage bucket name
+     */
+    private void upload(String outputName, String bucketName) throws IOException, GeneralSecurityException
+    {
+        if(getConfig().mergeOutput()) {
+            uploadFile("output/" + outputName, "text/plain", new File(outputName), bucketName);
+            return;
+        }
+
+        Path output = new Path(outputName);
+        FileSystem fs = output.getFileSystem(getSparkContext().hadoopConfiguration());
+
+        for(FileStatus part : fs.listStatus(output)) {
+            if(part.getPath().getName().startsWith("part-")) {
+                try(InputStream in = fs.open(part.getPath())) {
+                    uploadFile("output/" + outputName + "/" + part.getPath().getName(), "text/plain", in, part.getLen(), bucketName);
                 }
-                k++;
             }
-
-            buffer.deleteCharAt(buffer.length() - 1);
-            buffer.append("\n");
         }
-
-        writer.write(buffer.toString());
-        writer.flush();
-        writer.close();
     }
 
     /**
      * Print out data statistics like number of instances and class distribution.
      */
-    private void printStats(Broadcast<double[]> bcInstances, int col, int row)
+    private void printStats(int col, int row)
     {
-        double[] instances = bcInstances.getValue();
-        System.out.println("# instances: " + (int)instances[0] + " (pos: " + (int)instances[1] + ", neg: " + (int)instances[2] + ")");
-        System.out.println("yPos: [" + instances[3] + "," + instances[4] + "]");
-        System.out.println("yNeg: [" + instances[5] +"," + instances[6] + "]");
-        System.out.println("result size: col:" + (col-2) +", row: " + row);
+        System.out.println("# instances: " + row + " per class: " + Arrays.toString(classCounts)
+                + " (labels: " + Arrays.toString(classLabels) + ")");
+
+        for(int c = 0; c < responses.rows; c++) {
+            System.out.println("y" + c + ": " + Arrays.toString(responses.getRow(c).toArray()));
+        }
+
+        System.out.println("result size: col:" + col +", row: " + row);
     }
 }
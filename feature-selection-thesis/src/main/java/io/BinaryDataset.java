@@ -0,0 +1,253 @@
+package io;
+
+import org.apache.spark.SparkContext;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.mllib.linalg.Vectors;
+import org.apache.spark.mllib.regression.LabeledPoint;
+import org.apache.spark.mllib.util.MLUtils;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dataset in a binary format that is read without text parsing. The file starts with a header
+ * (number of rows, number of features, number of classes, flags and the positions of the tables),
+ * then one record per row (label, number of non-zero values, feature indexes, values), a table
+ * with the position of each row and a table with the label and size of each class. If all
+ * non-zero values are 1, as in Dorothea and Ads, the flag BINARY_VALUES is set and the records
+ * have no values.
+ * Partitions are ranges of rows and each partition maps its part of the file with
+ * FileChannel.map, so the file has to be readable under the same path on every executor
+ * (local file system or a shared mount).
+ */
+public class BinaryDataset implements Serializable
+{
+    /**
+     * First 4 bytes of a binary dataset ("FSB2").
+     */
+    public static final int MAGIC = 0x46534232;
+
+    /**
+     * First 4 bytes of a binary dataset of the first version ("FSB1"), without flags.
+     */
+    private static final int MAGIC_V1 = 0x46534231;
+
+    /**
+     * Size of the header in bytes.
+     */
+    public static final int HEADER_SIZE = 40;
+
+    /**
+     * Flag for datasets whose non-zero values are all 1; their records store no values.
+     */
+    public static final int BINARY_VALUES = 1;
+
+    private String fileName;
+    private int rows;
+    private int columns;
+    private int flags;
+    private long rowTablePosition;
+    private double[] labels;
+    private int[] classCounts;
+
+    private BinaryDataset(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Read the header and the class table of a binary dataset.
+     * @param fileName input file name
+     * @return the dataset, or null if the file is not a local file in the binary format
+     * @throws IOException if the file cannot be read
+     */
+    public static BinaryDataset open(String fileName) throws IOException
+    {
+        File file = new File(fileName);
+
+        if(!file.isFile() || file.length() < 32) {
+            return null;
+        }
+
+        BinaryDataset dataset = new BinaryDataset(fileName);
+
+        try(FileInputStream stream = new FileInputStream(file); DataInputStream in = new DataInputStream(stream)) {
+            int magic = in.readInt();
+
+            if(magic != MAGIC && magic != MAGIC_V1) {
+                return null;
+            }
+
+            dataset.rows = in.readInt();
+            dataset.columns = in.readInt();
+            int classes = in.readInt();
+
+            if(magic == MAGIC) {
+                dataset.flags = in.readInt();
+                in.readInt();
+            }
+
+            dataset.rowTablePosition = in.readLong();
+            long classTablePosition = in.readLong();
+
+            // the stream is not buffered, so the class table is read from the new position of its channel
+            stream.getChannel().position(classTablePosition);
+            dataset.labels = new double[classes];
+            dataset.classCounts = new int[classes];
+
+            for(int c = 0; c < classes; c++) {
+                dataset.labels[c] = in.readDouble();
+                dataset.classCounts[c] = in.readInt();
+            }
+        }
+
+        return dataset;
+    }
+
+    /**
+     * Get the number of rows (data points).
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of features, i.e. the highest feature index + 1.
+     * @return number of features
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the class labels in the order of their first appearance.
+     * @return labels
+     */
+    public double[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Get the number of data points of each class.
+     * @return count per label
+     */
+    public int[] getClassCounts() {
+        return classCounts;
+    }
+
+    /**
+     * Check if the records store no values because all non-zero values are 1.
+     * @return true if the flag BINARY_VALUES is set
+     */
+    public boolean hasBinaryValues() {
+        return (flags & BINARY_VALUES) != 0;
+    }
+
+    /**
+     * Split the rows into ranges of about the same size, one per partition.
+     * @param sc Spark context
+     * @param partitions number of partitions
+     * @return RDD with one {start, end} range per partition
+     */
+    public JavaRDD<int[]> getRowRanges(JavaSparkContext sc, int partitions)
+    {
+        List<int[]> ranges = new ArrayList<>();
+
+        for(int p = 0; p < partitions; p++) {
+            ranges.add(new int[]{(int) ((long) rows * p / partitions), (int) ((long) rows * (p + 1) / partitions)});
+        }
+
+        return sc.parallelize(ranges, partitions);
+    }
+
+    /**
+     * Map a range of rows.
+     * @param start first row
+     * @param end row after the last row
+     * @return reader over the rows
+     * @throws IOException if the file cannot be read or the range does not fit into one mapping (2 GB)
+     */
+    public BinaryRowReader read(int start, int end) throws IOException
+    {
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long from = readOffset(channel, start);
+            long to = readOffset(channel, end);
+
+            if(to - from > Integer.MAX_VALUE) {
+                throw new IOException("Rows " + start + " to " + end + " of " + fileName
+                        + " do not fit into one mapping, use more partitions");
+            }
+
+            return new BinaryRowReader(channel.map(FileChannel.MapMode.READ_ONLY, from, to - from), end - start,
+                    hasBinaryValues());
+        }
+    }
+
+    private long readOffset(FileChannel channel, int row) throws IOException
+    {
+        ByteBuffer offset = ByteBuffer.allocate(8);
+        long position = rowTablePosition + 8L * row;
+
+        while(offset.hasRemaining()) {
+            if(channel.read(offset, position + offset.position()) < 0) {
+                throw new IOException("Unexpected end of " + fileName + " in the offset of row " + row);
+            }
+        }
+
+        return offset.getLong(0);
+    }
+
+    /**
+     * Load the dataset as labeled points for MLlib, e.g. instead of MLUtils.loadLibSVMFile.
+     * @param sc Spark context
+     * @param partitions number of partitions
+     * @return RDD of labeled points with sparse feature vectors
+     */
+    public JavaRDD<LabeledPoint> loadLabeledPoints(JavaSparkContext sc, int partitions)
+    {
+        int size = columns;
+
+        return getRowRanges(sc, partitions).flatMap(range -> {
+            BinaryRowReader reader = read(range[0], range[1]);
+            List<LabeledPoint> points = new ArrayList<>(range[1] - range[0]);
+
+            while(reader.next()) {
+                int n = reader.getSize();
+                points.add(new LabeledPoint(reader.getLabel(), Vectors.sparse(size,
+                        Arrays.copyOf(reader.getIndexes(), n), Arrays.copyOf(reader.getValues(), n))));
+            }
+
+            return points;
+        });
+    }
+
+    /**
+     * Load the input of a classifier, mapped if it is in the binary format, otherwise parsed as libsvm text.
+     * @param sc Spark context
+     * @param path input file
+     * @return labeled points
+     * @throws IOException if the binary file cannot be read
+     */
+    public static JavaRDD<LabeledPoint> loadData(SparkContext sc, String path) throws IOException
+    {
+        BinaryDataset dataset = open(path);
+
+        if(dataset != null) {
+            return dataset.loadLabeledPoints(JavaSparkContext.fromSparkContext(sc), sc.defaultMinPartitions());
+        }
+
+        return MLUtils.loadLibSVMFile(sc, path).toJavaRDD();
+    }
+}
@@ -0,0 +1,161 @@
+package io;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a dataset in the binary format that BinaryDataset reads. Rows are written as they come,
+ * the row table, the class table and the header are completed when the writer is closed. A
+ * dataset whose non-zero values are all 1 is written without the values.
+ */
+public class BinaryDatasetWriter implements Closeable
+{
+    private String fileName;
+    private DataOutputStream out;
+    private long position = BinaryDataset.HEADER_SIZE;
+    private long[] rowOffsets = new long[1024];
+    private int rows = 0;
+    private int columns = 0;
+    private boolean binaryValues;
+    private Map<Double, Integer> classCounts = new LinkedHashMap<>();
+
+    /**
+     * Create the output file.
+     * @param fileName output file name
+     * @param binaryValues true if all non-zero values are 1, they are then not written
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryDatasetWriter(String fileName, boolean binaryValues) throws IOException
+    {
+        this.fileName = fileName;
+        this.binaryValues = binaryValues;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+
+        // placeholder, the header is written on close
+        out.write(new byte[BinaryDataset.HEADER_SIZE]);
+    }
+
+    /**
+     * Convert a file in libsvm format into the binary format.
+     * @param inputName libsvm file
+     * @param outputName binary file
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void convert(String inputName, String outputName) throws IOException
+    {
+        // the values are written only if the input turns out to have other values than 1
+        if(!convert(inputName, outputName, true)) {
+            convert(inputName, outputName, false);
+        }
+    }
+
+    /**
+     * Convert a file in libsvm format into the binary format.
+     * @return false if binaryValues is true and a non-zero value is not 1, the output is then incomplete
+     */
+    private static boolean convert(String inputName, String outputName, boolean binaryValues) throws IOException
+    {
+        LibSVMParser parser = new LibSVMParser();
+
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(inputName)));
+            BinaryDatasetWriter writer = new BinaryDatasetWriter(outputName, binaryValues)) {
+            String line;
+
+            while((line = in.readLine()) != null) {
+                if(parser.parse(line)) {
+                    if(binaryValues && !isBinary(parser.getValues(), parser.getSize())) {
+                        return false;
+                    }
+
+                    writer.addRow(parser.getLabel(), parser.getIndexes(), parser.getValues(), parser.getSize());
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isBinary(double[] values, int size)
+    {
+        for(int p = 0; p < size; p++) {
+            if(values[p] != 1.0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Append one row.
+     * @param label class label
+     * @param indexes feature indexes of the non-zero values, starting at 0
+     * @param values non-zero values
+     * @param size number of non-zero values
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if the writer has binary values and a value is not 1
+     */
+    public void addRow(double label, int[] indexes, double[] values, int size) throws IOException
+    {
+        if(binaryValues && !isBinary(values, size)) {
+            throw new IllegalArgumentException("Non-zero value other than 1 in row " + rows + " of a dataset with binary values");
+        }
+
+        if(rows + 1 == rowOffsets.length) {
+            rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+        }
+
+        rowOffsets[rows++] = position;
+        classCounts.merge(label, 1, (a, b) -> a + b);
+
+        out.writeDouble(label);
+        out.writeInt(size);
+
+        for(int p = 0; p < size; p++) {
+            out.writeInt(indexes[p]);
+            columns = Math.max(columns, indexes[p] + 1);
+        }
+
+        for(int p = 0; p < size && !binaryValues; p++) {
+            out.writeDouble(values[p]);
+        }
+
+        position += 12 + (binaryValues ? 4L : 12L) * size;
+    }
+
+    /**
+     * Write the row table, the class table and the header, and close the file.
+     * @throws IOException if the file cannot be written
+     */
+    public void close() throws IOException
+    {
+        rowOffsets[rows] = position;
+        long rowTablePosition = position;
+
+        for(int i = 0; i <= rows; i++) {
+            out.writeLong(rowOffsets[i]);
+        }
+
+        long classTablePosition = rowTablePosition + 8L * (rows + 1);
+
+        for(Map.Entry<Double, Integer> entry : classCounts.entrySet()) {
+            out.writeDouble(entry.getKey());
+            out.writeInt(entry.getValue());
+        }
+
+        out.close();
+
+        try(RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            file.writeInt(BinaryDataset.MAGIC);
+            file.writeInt(rows);
+            file.writeInt(columns);
+            file.writeInt(classCounts.size());
+            file.writeInt(binaryValues ? BinaryDataset.BINARY_VALUES : 0);
+            file.writeInt(0);
+            file.writeLong(rowTablePosition);
+            file.writeLong(classTablePosition);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package io;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reads the rows of a mapped region of a binary dataset into reusable primitive buffers,
+ * with the same accessors as LibSVMParser.
+ */
+public class BinaryRowReader
+{
+    private ByteBuffer buffer;
+    private int remaining;
+    private boolean binaryValues;
+    private double label;
+    private int size;
+    private int[] indexes = new int[64];
+    private double[] values = new double[64];
+
+    /**
+     * Create a reader over mapped rows.
+     * @param buffer mapped row records
+     * @param rows number of rows in the buffer
+     * @param binaryValues true if the records store no values because all non-zero values are 1
+     */
+    public BinaryRowReader(ByteBuffer buffer, int rows, boolean binaryValues)
+    {
+        this.buffer = buffer;
+        this.remaining = rows;
+        this.binaryValues = binaryValues;
+
+        if(binaryValues) {
+            Arrays.fill(values, 1.0);
+        }
+    }
+
+    /**
+     * Read the next row.
+     * @return false if there are no more rows
+     */
+    public boolean next()
+    {
+        if(remaining == 0) {
+            return false;
+        }
+
+        remaining--;
+        label = buffer.getDouble();
+        size = buffer.getInt();
+
+        if(size > indexes.length) {
+            indexes = Arrays.copyOf(indexes, Math.max(size, indexes.length * 2));
+            values = Arrays.copyOf(values, indexes.length);
+
+            if(binaryValues) {
+                Arrays.fill(values, 1.0);
+            }
+        }
+
+        for(int p = 0; p < size; p++) {
+            indexes[p] = buffer.getInt();
+        }
+
+        for(int p = 0; p < size && !binaryValues; p++) {
+            values[p] = buffer.getDouble();
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the label of the current row.
+     * @return class label
+     */
+    public double getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Get the number of non-zero values of the current row.
+     * @return number of values
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Get the feature indexes of the current row, starting at 0. Only the first getSize() entries are valid.
+     * @return buffer with feature indexes
+     */
+    public int[] getIndexes()
+    {
+        return indexes;
+    }
+
+    /**
+     * Get the non-zero values of the current row. Only the first getSize() entries are valid.
+     * @return buffer with values
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+}
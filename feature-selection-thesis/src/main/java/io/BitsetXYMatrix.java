@@ -0,0 +1,211 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+/**
+ * Features (X) with only 0/1 values, stored as one bitset per feature (64 data points per long),
+ * and the class of each data point. Products of two features become AND + popcount loops, e.g.
+ * for Dorothea and the binarized Ads data.
+ */
+public class BitsetXYMatrix implements FeatureBlock
+{
+    private int rows;
+    private int columns;
+
+    /**
+     * Number of longs per feature.
+     */
+    private int words;
+
+    /**
+     * Bits of feature j are at positions j * words to (j + 1) * words - 1.
+     */
+    private long[] bits;
+
+    /**
+     * One bitset per class that marks the data points of this class.
+     */
+    private long[][] classMasks;
+    private int[] classes;
+
+    /**
+     * Convert a sparse block with only 0/1 values into bitsets.
+     * @param sparse block in CSR format
+     * @param numberOfClasses number of classes
+     */
+    public BitsetXYMatrix(SparseXYMatrix sparse, int numberOfClasses)
+    {
+        this.rows = sparse.getRows();
+        this.columns = sparse.getColumns();
+        this.words = (rows + 63) >>> 6;
+        this.bits = new long[columns * words];
+        this.classMasks = new long[numberOfClasses][words];
+        this.classes = sparse.getClasses();
+
+        int rowPointers[] = sparse.getRowPointers();
+        int columnIndexes[] = sparse.getColumnIndexes();
+
+        for(int i = 0; i < rows; i++) {
+            long bit = 1L << (i & 63);
+            classMasks[classes[i]][i >>> 6] |= bit;
+
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                bits[columnIndexes[p] * words + (i >>> 6)] |= bit;
+            }
+        }
+    }
+
+    public int[] getClasses() {
+        return classes;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Count the data points where feature j and the given bitset are both 1.
+     * @param j feature
+     * @param mask bitset over the data points
+     * @param offset position of the bitset in the mask array
+     * @return number of common bits
+     */
+    private int countCommon(int j, long[] mask, int offset) {
+        int count = 0;
+        int start = j * words;
+
+        for(int w = 0; w < words; w++) {
+            count += Long.bitCount(bits[start + w] & mask[offset + w]);
+        }
+
+        return count;
+    }
+
+    public DoubleMatrix classSums() {
+        // number of 1s of each feature within each class
+        DoubleMatrix result = new DoubleMatrix(classMasks.length, columns);
+
+        for(int j = 0; j < columns; j++) {
+            for(int c = 0; c < classMasks.length; c++) {
+                result.data[j * classMasks.length + c] = countCommon(j, classMasks[c], 0);
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix crossProduct(DoubleMatrix m) {
+        int width = m.getColumns();
+        DoubleMatrix result = new DoubleMatrix(width, columns);
+
+        for(int j = 0; j < columns; j++) {
+            for(int w = 0; w < words; w++) {
+                long word = bits[j * words + w];
+
+                while(word != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+
+                    for(int q = 0; q < width; q++) {
+                        result.data[j * width + q] += m.data[i + q * rows];
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix squaredColumnSums() {
+        DoubleMatrix result = new DoubleMatrix(1, columns);
+
+        for(int j = 0; j < columns; j++) {
+            for(int w = 0; w < words; w++) {
+                result.data[j] += Long.bitCount(bits[j * words + w]);
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix columnCrossProducts(int index) {
+        DoubleMatrix result = new DoubleMatrix(columns);
+
+        for(int j = 0; j < columns; j++) {
+            result.data[j] = countCommon(j, bits, index * words);
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix gramMatrix() {
+        DoubleMatrix result = new DoubleMatrix(columns, columns);
+
+        for(int j = 0; j < columns; j++) {
+            for(int k = 0; k <= j; k++) {
+                int count = countCommon(j, bits, k * words);
+                result.data[j * columns + k] = count;
+                result.data[k * columns + j] = count;
+            }
+        }
+
+        return result;
+    }
+
+    public SparseXYMatrix toSparse() {
+        int rowPointers[] = new int[rows + 1];
+
+        for(int j = 0; j < columns; j++) {
+            for(int w = 0; w < words; w++) {
+                long word = bits[j * words + w];
+
+                while(word != 0) {
+                    rowPointers[(w << 6) + Long.numberOfTrailingZeros(word) + 1]++;
+                    word &= word - 1;
+                }
+            }
+        }
+
+        for(int i = 0; i < rows; i++) {
+            rowPointers[i + 1] += rowPointers[i];
+        }
+
+        int next[] = rowPointers.clone();
+        int columnIndexes[] = new int[rowPointers[rows]];
+        double values[] = new double[rowPointers[rows]];
+
+        // features in ascending order, so the column indexes of each row are sorted
+        for(int j = 0; j < columns; j++) {
+            for(int w = 0; w < words; w++) {
+                long word = bits[j * words + w];
+
+                while(word != 0) {
+                    int i = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    columnIndexes[next[i]] = j;
+                    values[next[i]++] = 1.0;
+                }
+            }
+        }
+
+        return new SparseXYMatrix(columns, rowPointers, columnIndexes, values, classes, classMasks.length);
+    }
+
+    public DoubleMatrix getColumns(int[] indexes) {
+        DoubleMatrix result = new DoubleMatrix(rows, indexes.length);
+
+        for(int k = 0; k < indexes.length; k++) {
+            for(int i = 0; i < rows; i++) {
+                if((bits[indexes[k] * words + (i >>> 6)] & (1L << (i & 63))) != 0) {
+                    result.put(i, k, 1.0);
+                }
+            }
+        }
+
+        return result;
+    }
+}
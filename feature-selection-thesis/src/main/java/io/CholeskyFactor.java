@@ -0,0 +1,120 @@
+package io;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cholesky factor L of the Gram matrix A = X1^T X1 of the selected features (A = L L^T).
+ * The factor grows by one row per selected feature (bordered update), which costs O(l^2)
+ * instead of the O(l^3) of a pseudo-inverse of A.
+ */
+public class CholeskyFactor implements Serializable
+{
+    /**
+     * Relative size of the squared pivot below which a new feature is treated as linearly dependent.
+     */
+    public static final double PIVOT_TOLERANCE = 1e-10;
+
+    /**
+     * Rows of the lower triangular factor, row i has i+1 values.
+     */
+    private List<double[]> rows = new ArrayList<>();
+
+    /**
+     * Get the size of the factor.
+     * @return number of rows of L
+     */
+    public int size()
+    {
+        return rows.size();
+    }
+
+    /**
+     * Get the rows of the lower triangular factor.
+     * @return row i holds L[i][0..i]
+     */
+    public List<double[]> getRows()
+    {
+        return rows;
+    }
+
+    /**
+     * Solve L y = a by forward substitution.
+     * @param a vector with one value per row of L
+     * @return y
+     */
+    public double[] solve(double[] a)
+    {
+        double y[] = new double[rows.size()];
+
+        for(int i = 0; i < y.length; i++) {
+            double row[] = rows.get(i);
+            double sum = a[i];
+
+            for(int j = 0; j < i; j++) {
+                sum -= row[j] * y[j];
+            }
+
+            y[i] = sum / row[i];
+        }
+
+        return y;
+    }
+
+    /**
+     * Border the factor with a new feature: A' = [A a; a^T diagonal] gives L' = [L 0; y^T pivot]
+     * with L y = a and pivot = sqrt(diagonal - y^T y).
+     * @param a cross-products of the new feature with the features already in the factor
+     * @param diagonal squared norm of the new feature
+     * @return y followed by the pivot, or null if the new feature is numerically dependent on the factor
+     */
+    public double[] add(double[] a, double diagonal)
+    {
+        double y[] = solve(a);
+        double squaredPivot = diagonal;
+
+        for(double value : y) {
+            squaredPivot -= value * value;
+        }
+
+        if(!(squaredPivot > PIVOT_TOLERANCE * diagonal)) {
+            return null;
+        }
+
+        double row[] = new double[y.length + 1];
+        System.arraycopy(y, 0, row, 0, y.length);
+        row[y.length] = Math.sqrt(squaredPivot);
+        rows.add(row);
+
+        return row;
+    }
+
+    /**
+     * Compute the new row of L^-1 M after bordering, for a matrix M with one row per factor row.
+     * Used for U = L^-1 CY1^T: its new row is (m - sum of y[r] * rows[r]) / pivot.
+     * @param m new row of M
+     * @param border new row of the factor: y followed by the pivot
+     * @param rows previous rows of L^-1 M
+     * @return new row of L^-1 M
+     */
+    public static double[] eliminate(double[] m, double[] border, List<double[]> rows)
+    {
+        int l = rows.size();
+        double result[] = m.clone();
+
+        for(int r = 0; r < l; r++) {
+            double row[] = rows.get(r);
+
+            for(int q = 0; q < result.length; q++) {
+                result[q] -= border[r] * row[q];
+            }
+        }
+
+        for(int q = 0; q < result.length; q++) {
+            result[q] /= border[l];
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.Serializable;
+
+/**
+ * Statistics of step 1-2 gathered in one scan over the data: the column sums of X per class (S)
+ * and v = 1^T (X.*X). E = Y^T X follows from S and the response table on the driver, so Y is
+ * never materialized and the cost does not grow with the number of data points per class.
+ */
+public class ClassStatistics implements Serializable
+{
+    private DoubleMatrix classSums;
+    private DoubleMatrix vMatrix;
+
+    /**
+     * Add the statistics of one partition in place.
+     * @param block features and classes of the partition
+     * @return this object after addition operation
+     */
+    public ClassStatistics add(FeatureBlock block)
+    {
+        return add(block.classSums(), block.squaredColumnSums());
+    }
+
+    /**
+     * Statistics of one set of partitions can be added to other statistics, in place.
+     * @param other statistics to be added
+     * @return this object after addition operation
+     */
+    public ClassStatistics merge(ClassStatistics other)
+    {
+        if(other.classSums == null) {
+            return this;
+        }
+
+        return add(other.classSums, other.vMatrix);
+    }
+
+    private ClassStatistics add(DoubleMatrix sums, DoubleMatrix v)
+    {
+        if(classSums == null) {
+            classSums = sums;
+            vMatrix = v;
+        } else {
+            classSums.addi(sums);
+            vMatrix.addi(v);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get E and v.
+     * @param responses response table with one row of Y per class
+     * @return feature score of step 1-3
+     */
+    public FeatureScore getFeatureScore(DoubleMatrix responses)
+    {
+        return new FeatureScore(getEMatrix(responses, classSums), vMatrix);
+    }
+
+    /**
+     * Compute E = Y^T X = R^T S from the column sums per class.
+     * @param responses response table R with one row of Y per class
+     * @param classSums column sums of X per class S
+     * @return E matrix
+     */
+    public static DoubleMatrix getEMatrix(DoubleMatrix responses, DoubleMatrix classSums)
+    {
+        return responses.transpose().mmul(classSums);
+    }
+}
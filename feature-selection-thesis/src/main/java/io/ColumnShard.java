@@ -0,0 +1,175 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A range of features over all data points, in compressed sparse column (CSC) format. Used
+ * for wide data (many more features than data points): each shard scores its own features
+ * and only the index and score of its best candidate go back to the driver.
+ */
+public class ColumnShard implements Serializable
+{
+    private int start;
+    private int rows;
+    private int[] columnPointers;
+    private int[] rowIndexes;
+    private double[] values;
+    private DoubleMatrix eMatrix;
+    private ResidualScores residuals;
+    private boolean[] isSelected;
+
+    /**
+     * Construct a shard with features start to start + columnPointers.length - 2.
+     * @param start index of the first feature
+     * @param rows number of data points
+     * @param columnPointers start position of each column, followed by the number of non-zero values
+     * @param rowIndexes row index of each non-zero value
+     * @param values non-zero values
+     * @param classes class of all data points
+     * @param responses response table with one row of Y per class
+     * @param lazy true to refresh only the scores of the best candidates (see ResidualScores)
+     */
+    public ColumnShard(int start, int rows, int[] columnPointers, int[] rowIndexes, double[] values, int[] classes,
+                       DoubleMatrix responses, boolean lazy)
+    {
+        this.start = start;
+        this.rows = rows;
+        this.columnPointers = columnPointers;
+        this.rowIndexes = rowIndexes;
+        this.values = values;
+
+        int columns = getColumns();
+        int numberOfClasses = responses.rows;
+        DoubleMatrix classSums = new DoubleMatrix(numberOfClasses, columns);
+        DoubleMatrix vMatrix = new DoubleMatrix(1, columns);
+
+        // step 1-2: column sums per class and v = 1^T (X.*X) for the features of this shard
+        for(int j = 0; j < columns; j++) {
+            for(int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                classSums.data[j * numberOfClasses + classes[rowIndexes[p]]] += values[p];
+                vMatrix.data[j] += values[p] * values[p];
+            }
+        }
+
+        eMatrix = ClassStatistics.getEMatrix(responses, classSums);
+        residuals = new ResidualScores(eMatrix, vMatrix, lazy);
+        isSelected = new boolean[columns];
+    }
+
+    private ColumnShard(ColumnShard shard)
+    {
+        start = shard.start;
+        rows = shard.rows;
+        columnPointers = shard.columnPointers;
+        rowIndexes = shard.rowIndexes;
+        values = shard.values;
+        eMatrix = shard.eMatrix;
+        residuals = shard.residuals.copy();
+        isSelected = shard.isSelected.clone();
+    }
+
+    /**
+     * Get the number of features in this shard.
+     * @return number of columns
+     */
+    public int getColumns()
+    {
+        return columnPointers.length - 1;
+    }
+
+    /**
+     * Get the values of one feature.
+     * @param j column in this shard
+     * @return one value per data point
+     */
+    public double[] getColumn(int j)
+    {
+        double column[] = new double[rows];
+
+        for(int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+            column[rowIndexes[p]] = values[p];
+        }
+
+        return column;
+    }
+
+    /**
+     * Compute X^T f for the features of this shard (step 8).
+     * @param f values of the selected feature for all data points
+     * @return one cross-product per feature in this shard
+     */
+    public double[] crossProducts(double[] f)
+    {
+        int columns = getColumns();
+        double result[] = new double[columns];
+
+        for(int j = 0; j < columns; j++) {
+            for(int p = columnPointers[j]; p < columnPointers[j + 1]; p++) {
+                result[j] += values[p] * f[rowIndexes[p]];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Add a selected feature. The shard is not changed, so that a cached shard stays valid.
+     * @param update selected feature and new rows of the Cholesky factor and U
+     * @return updated copy of this shard
+     */
+    public ColumnShard update(ShardUpdate update)
+    {
+        ColumnShard shard = new ColumnShard(this);
+
+        if(update.getBorder() != null) {
+            shard.residuals.update(crossProducts(update.getColumn()), update.getBorder(), update.getU());
+        }
+
+        int j = update.getIndex() - start;
+
+        if(j >= 0 && j < isSelected.length) {
+            shard.isSelected[j] = true;
+        }
+
+        return shard;
+    }
+
+    /**
+     * Get the features of this shard among the given ones, e.g. to rebuild a saved selection.
+     * @param indexes indexes of features
+     * @return features with their columns, the score is the current one
+     */
+    public List<FeatureCandidate> getCandidates(List<Integer> indexes)
+    {
+        List<FeatureCandidate> candidates = new ArrayList<>();
+
+        for(int index : indexes) {
+            int j = index - start;
+
+            if(j >= 0 && j < isSelected.length) {
+                candidates.add(new FeatureCandidate(index, residuals.getScore(j), getColumn(j), eMatrix.getColumn(j).toArray()));
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Find the unselected feature of this shard with the highest score (step 11).
+     * @return best feature without its columns, or null if no feature has a valid score
+     */
+    public FeatureCandidate getBest()
+    {
+        int best = residuals.getBest(isSelected);
+
+        if(best < 0) {
+            return null;
+        }
+
+        return new FeatureCandidate(start + best, residuals.getScore(best));
+    }
+}
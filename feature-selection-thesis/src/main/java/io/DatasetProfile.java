@@ -0,0 +1,327 @@
+package io;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Profile of a dataset, gathered while the data is read and merged over all partitions in one
+ * aggregation: number of data points per label, number of features (highest feature index + 1),
+ * non-zero values, minimum/maximum and a fingerprint per feature, whether all values are 0/1, and
+ * a fingerprint of the whole content. It decides the dimensionality, the number of classes, the
+ * features that are pruned and the storage of the feature blocks.
+ */
+public class DatasetProfile implements Serializable
+{
+    private int rows = 0;
+    private long nonZeros = 0;
+    private boolean binary = true;
+    private int columns = 0;
+    private TreeMap<Double, Integer> labelCounts = new TreeMap<>();
+
+    /**
+     * Number of non-zero values, minimum and maximum of the non-zero values per feature. The arrays
+     * grow with the highest feature index, only the first 'columns' entries are valid.
+     */
+    private int[] columnNonZeros = new int[0];
+    private double[] minValues = new double[0];
+    private double[] maxValues = new double[0];
+
+    /**
+     * Two independent 64 bit hashes per feature over its (row, value) pairs. They are sums of
+     * one hash per non-zero value, so they do not depend on the order of the rows or partitions
+     * and equal features have equal hashes.
+     */
+    private long[] hashes = new long[0];
+    private long[] otherHashes = new long[0];
+
+    /**
+     * Two independent 64 bit hashes of the content: sums of one hash per data point over its label,
+     * indexes and values. They do not depend on the order or partitioning of the data points, so
+     * the same data in text or binary format has the same fingerprint.
+     */
+    private long contentHash = 0;
+    private long otherContentHash = 0;
+
+    /**
+     * Add one data point.
+     * @param label class label
+     * @param indexes feature indexes, starting at 0
+     * @param values values
+     * @param from position of the first non-zero value of the data point in indexes and values
+     * @param to position after the last non-zero value
+     * @param rowKey number that is unique for each data point of the dataset
+     */
+    public void add(double label, int[] indexes, double[] values, int from, int to, long rowKey)
+    {
+        rows++;
+        nonZeros += to - from;
+        labelCounts.merge(label, 1, (a, b) -> a + b);
+
+        long rowHash = Double.doubleToLongBits(label);
+        long otherRowHash = Long.rotateLeft(rowHash, 17);
+
+        for(int p = from; p < to; p++) {
+            int j = indexes[p];
+            double value = values[p];
+
+            if(j >= columns) {
+                grow(j + 1);
+            }
+
+            columnNonZeros[j]++;
+            minValues[j] = Math.min(minValues[j], value);
+            maxValues[j] = Math.max(maxValues[j], value);
+            binary &= value == 1.0;
+
+            long bits = Double.doubleToLongBits(value);
+            hashes[j] += mix(rowKey * 0x9E3779B97F4A7C15L + bits);
+            otherHashes[j] += mix((rowKey ^ 0xC2B2AE3D27D4EB4FL) * 0x94D049BB133111EBL + Long.rotateLeft(bits, 29));
+
+            rowHash = mix(rowHash * 31 + j) + bits;
+            otherRowHash = mix((otherRowHash ^ j) * 0x9E3779B97F4A7C15L) ^ Long.rotateLeft(bits, 29);
+        }
+
+        contentHash += mix(rowHash);
+        otherContentHash += mix(otherRowHash ^ 0xC2B2AE3D27D4EB4FL);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreads the bits of a number over the whole hash.
+     */
+    private static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Merge the profile of another set of data points into this profile.
+     * @param other profile to be merged, it is not changed
+     * @return this profile after merging
+     */
+    public DatasetProfile merge(DatasetProfile other)
+    {
+        rows += other.rows;
+        nonZeros += other.nonZeros;
+        binary &= other.binary;
+        contentHash += other.contentHash;
+        otherContentHash += other.otherContentHash;
+
+        for(Map.Entry<Double, Integer> entry : other.labelCounts.entrySet()) {
+            labelCounts.merge(entry.getKey(), entry.getValue(), (a, b) -> a + b);
+        }
+
+        if(other.columns > columns) {
+            grow(other.columns);
+        }
+
+        for(int j = 0; j < other.columns; j++) {
+            columnNonZeros[j] += other.columnNonZeros[j];
+            minValues[j] = Math.min(minValues[j], other.minValues[j]);
+            maxValues[j] = Math.max(maxValues[j], other.maxValues[j]);
+            hashes[j] += other.hashes[j];
+            otherHashes[j] += other.otherHashes[j];
+        }
+
+        return this;
+    }
+
+    private void grow(int newColumns)
+    {
+        if(newColumns > columnNonZeros.length) {
+            int capacity = Math.max(newColumns, columnNonZeros.length * 2);
+            int oldCapacity = columnNonZeros.length;
+
+            columnNonZeros = Arrays.copyOf(columnNonZeros, capacity);
+            minValues = Arrays.copyOf(minValues, capacity);
+            maxValues = Arrays.copyOf(maxValues, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            otherHashes = Arrays.copyOf(otherHashes, capacity);
+            Arrays.fill(minValues, oldCapacity, capacity, Double.POSITIVE_INFINITY);
+            Arrays.fill(maxValues, oldCapacity, capacity, Double.NEGATIVE_INFINITY);
+        }
+
+        columns = newColumns;
+    }
+
+    /**
+     * Get the number of data points.
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of features, i.e. the highest feature index + 1.
+     * @return number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the number of non-zero values.
+     * @return number of non-zero values over all features
+     */
+    public long getNonZeros() {
+        return nonZeros;
+    }
+
+    /**
+     * Get the ratio of non-zero values.
+     * @return density between 0 and 1
+     */
+    public double getDensity() {
+        return rows == 0 || columns == 0 ? 0.0 : (double) nonZeros / ((double) rows * columns);
+    }
+
+    /**
+     * Check whether all values are 0 or 1.
+     * @return true if every non-zero value is 1
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Get the labels in ascending order.
+     * @return distinct labels
+     */
+    public double[] getLabels() {
+        double labels[] = new double[labelCounts.size()];
+        int c = 0;
+
+        for(double label : labelCounts.keySet()) {
+            labels[c++] = label;
+        }
+
+        return labels;
+    }
+
+    /**
+     * Get the number of data points per label.
+     * @return one count per label, in the order of getLabels()
+     */
+    public int[] getClassCounts() {
+        int counts[] = new int[labelCounts.size()];
+        int c = 0;
+
+        for(int count : labelCounts.values()) {
+            counts[c++] = count;
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get the number of non-zero values per feature.
+     * @return one count per feature
+     */
+    public int[] getColumnNonZeros() {
+        return Arrays.copyOf(columnNonZeros, columns);
+    }
+
+    /**
+     * Get the minimum value of a feature, including its zero values.
+     * @param j feature index
+     * @return minimum value
+     */
+    public double getMinValue(int j) {
+        return columnNonZeros[j] < rows ? Math.min(minValues[j], 0.0) : minValues[j];
+    }
+
+    /**
+     * Get the maximum value of a feature, including its zero values.
+     * @param j feature index
+     * @return maximum value
+     */
+    public double getMaxValue(int j) {
+        return columnNonZeros[j] < rows ? Math.max(maxValues[j], 0.0) : maxValues[j];
+    }
+
+    /**
+     * Get the fingerprint of the content, e.g. to find earlier results for the same data.
+     * @return hexadecimal hashes of the data points with the number of rows and features
+     */
+    public String getFingerprint() {
+        return String.format("%016x%016x-%d-%d", contentHash, otherContentHash, rows, columns);
+    }
+
+    /**
+     * Find the features that are kept for the selection (spark.fs.prune): all-zero features, which
+     * never have a valid score, and all but the first of equal features (same fingerprint, number
+     * of non-zero values, minimum and maximum), which can never be selected before the first one,
+     * are dropped, so is every feature with fewer non-zero values than the minimum support, which
+     * changes the result if such a feature would have been selected. Constant non-zero features
+     * are kept: they have no score on their own (E = Y^T (c 1) = 0 since Y is centered, while
+     * v = n c^2 > 0), but once other features are selected they act as an intercept and can be
+     * selected.
+     * @param config selector configuration
+     * @return original indexes of the kept features in ascending order
+     */
+    public int[] getLiveColumns(SelectorConfig config) {
+        List<Integer> live = new ArrayList<>();
+        Map<Long, Integer> firstByHash = new HashMap<>();
+
+        for(int j = 0; j < columns; j++) {
+            if(config.prune()) {
+                if(columnNonZeros[j] == 0 || columnNonZeros[j] < config.getMinSupport()) {
+                    continue;
+                }
+
+                Integer first = firstByHash.putIfAbsent(hashes[j], j);
+
+                if(first != null && otherHashes[first] == otherHashes[j] && columnNonZeros[first] == columnNonZeros[j]
+                        && minValues[first] == minValues[j] && maxValues[first] == maxValues[j]) {
+                    continue;
+                }
+            }
+
+            live.add(j);
+        }
+
+        int result[] = new int[live.size()];
+
+        for(int i = 0; i < result.length; i++) {
+            result[i] = live.get(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Decide how the feature blocks are stored: bitsets if all values are 0/1 (and bitsets are
+     * enabled), otherwise sparse if the density of the kept features is at most the configured
+     * maximum, dense if not.
+     * @param config selector configuration
+     * @param liveColumns original indexes of the kept features, the columns of the blocks
+     * @return storage of the feature blocks
+     */
+    public PartitionBuilder.Storage getStorage(SelectorConfig config, int[] liveColumns) {
+        if(binary && config.useBitset()) {
+            return PartitionBuilder.Storage.BITSET;
+        }
+
+        long liveNonZeros = 0;
+
+        for(int j : liveColumns) {
+            liveNonZeros += columnNonZeros[j];
+        }
+
+        double density = rows == 0 || liveColumns.length == 0 ? 0.0 : (double) liveNonZeros / ((double) rows * liveColumns.length);
+        return density <= config.getSparseMaxDensity() ? PartitionBuilder.Storage.SPARSE : PartitionBuilder.Storage.DENSE;
+    }
+
+    @Override
+    public String toString() {
+        return "# rows: " + rows + ", features: " + columns + ", non-zeros: " + nonZeros
+                + " (density " + getDensity() + (binary ? ", binary" : "") + "), labels: " + labelCounts;
+    }
+}
@@ -3,44 +3,139 @@ package io;
 import org.apache.spark.SparkConf;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.jblas.DoubleMatrix;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Abstract class to regulate input reader structure for feature selection.
  */
 public abstract class FSInputReader
 {
+    /**
+     * Classes registered with Kryo: the feature blocks that are cached and the statistics and
+     * matrices that are aggregated on the driver.
+     */
+    private static final Class<?>[] KRYO_CLASSES = {
+            XYMatrix.class, SparseXYMatrix.class, BitsetXYMatrix.class, PartitionBuilder.class, DatasetProfile.class,
+            ClassStatistics.class, GramStatistics.class, FeatureScore.class, FeatureMatrices.class,
+            ColumnShard.class, FeatureCandidate.class, DoubleMatrix.class, double[].class, int[].class, long[].class, long[][].class
+    };
 
     /**
      * Raw data as RDD of String consist of features and class labels.
      */
     private JavaRDD<String> rawData;
 
+    /**
+     * Input in the binary format, null if the input is a text file.
+     */
+    private BinaryDataset binaryDataset;
+
+    /**
+     * Number of partitions of the input.
+     */
+    private int numberOfPartitions;
+
     /**
      * SparkContext object to run Spark program.
      */
     private JavaSparkContext sc;
 
+    /**
+     * Tuning options of the feature selector.
+     */
+    private SelectorConfig config;
+
+    /**
+     * Receivers of the selected features while they are chosen.
+     */
+    private List<SelectionListener> listeners = new ArrayList<>();
+
+    /**
+     * Recorder of the metrics of every stage of the run.
+     */
+    private SelectionMetrics metrics;
 
     /**
      * Constructor that regulates input reader structure for feature selection.
+     * Input in the binary format (see BinaryDataset) is mapped instead of read as text.
      * @param fileName input file name
      */
     public FSInputReader(String fileName, int numOfExecutors)
     {
         SparkConf conf = new SparkConf().setAppName("Feature Selector");
+
+        // Kryo is used for the data, the tasks are still serialized with Java serialization
+        if(conf.getBoolean("spark.fs.kryo", false) || conf.get("spark.serializer", "").contains("Kryo")) {
+            conf.registerKryoClasses(KRYO_CLASSES);
+        }
+
         sc = new JavaSparkContext(conf);
-        rawData = sc.textFile(fileName, numOfExecutors).cache();
+        config = new SelectorConfig(sc.getConf());
+        metrics = new SelectionMetrics(sc);
+        numberOfPartitions = numOfExecutors;
+
+        if(config.getMetricsFile() != null) {
+            try {
+                metrics.addSink(new JsonLinesMetricsSink(config.getMetricsFile()));
+            } catch(IOException e) {
+                System.out.println("Cannot open " + config.getMetricsFile() + ": " + e);
+            }
+        }
+
+        try {
+            binaryDataset = BinaryDataset.open(fileName);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if(binaryDataset == null) {
+            rawData = sc.textFile(fileName, numOfExecutors).cache();
+        }
     }
 
     /**
      * Get text read from input file as RDD.
-     * @return features and class labels from input file
+     * @return features and class labels from input file, null if the input is binary
      */
     protected JavaRDD<String> getRawData()
     {
         return rawData;
     }
 
+    /**
+     * Drop the cached text of the input once it has been parsed, so the data is not kept in
+     * memory twice.
+     */
+    protected void releaseRawData()
+    {
+        if(rawData != null) {
+            rawData.unpersist();
+        }
+    }
+
+    /**
+     * Get the input in the binary format.
+     * @return binary dataset, null if the input is a text file
+     */
+    protected BinaryDataset getBinaryDataset()
+    {
+        return binaryDataset;
+    }
+
+    /**
+     * Get the number of partitions of the input.
+     * @return number of partitions
+     */
+    protected int getNumberOfPartitions()
+    {
+        return numberOfPartitions;
+    }
+
     /**
      * Get Spark context.
      * @return Spark context
@@ -50,6 +145,51 @@ public abstract class FSInputReader
         return sc;
     }
 
+    /**
+     * Get tuning options of the feature selector.
+     * @return selector configuration
+     */
+    protected SelectorConfig getConfig()
+    {
+        return config;
+    }
+
+    /**
+     * Add a receiver of the selected features, which are given to it in the order of selection.
+     * @param listener selection listener
+     */
+    public void addSelectionListener(SelectionListener listener)
+    {
+        listeners.add(listener);
+    }
+
+    /**
+     * Get the receivers of the selected features.
+     * @return selection listeners
+     */
+    protected List<SelectionListener> getSelectionListeners()
+    {
+        return listeners;
+    }
+
+    /**
+     * Add a receiver of the metrics of every stage of the run.
+     * @param sink metrics sink
+     */
+    public void addMetricsSink(MetricsSink sink)
+    {
+        metrics.addSink(sink);
+    }
+
+    /**
+     * Get the recorder of the stage metrics.
+     * @return selection metrics
+     */
+    protected SelectionMetrics getMetrics()
+    {
+        return metrics;
+    }
+
     /**
      * This method calls the actual feature selection.
      * @param loopNumber number of features to be selected
@@ -0,0 +1,78 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.Serializable;
+
+/**
+ * Block of data points held by one partition: features (X) and the class of each data point.
+ * The response matrix Y has the same row for all data points of a class, so Y is never stored:
+ * every product with Y is derived from the column sums per class.
+ * Implementations decide how X is stored, but provide the products needed by the algorithm.
+ */
+public interface FeatureBlock extends Serializable
+{
+    /**
+     * Get the number of data points in this block.
+     * @return number of rows of X
+     */
+    int getRows();
+
+    /**
+     * Get the number of features in this block.
+     * @return number of columns of X
+     */
+    int getColumns();
+
+    /**
+     * Get the class of each data point, i.e. its row in the response table.
+     * @return class index per row of X
+     */
+    int[] getClasses();
+
+    /**
+     * Compute the column sums of X per class, S. With the response table R (one row of Y per
+     * class), E = Y^T X = R^T S (step 2).
+     * @return matrix with one row per class and one column per feature
+     */
+    DoubleMatrix classSums();
+
+    /**
+     * Compute m^T X, e.g. X1^T X in step 10.
+     * @param m matrix with one row per data point
+     * @return product with as many rows as m has columns and one column per feature
+     */
+    DoubleMatrix crossProduct(DoubleMatrix m);
+
+    /**
+     * Compute 1^T (X.*X), the sum of squared values per feature.
+     * @return row vector with one value per feature
+     */
+    DoubleMatrix squaredColumnSums();
+
+    /**
+     * Compute X^T f where f is one column of X (step 8).
+     * @param index index of the column f
+     * @return column vector with one value per feature
+     */
+    DoubleMatrix columnCrossProducts(int index);
+
+    /**
+     * Compute X^T X, the cross-products of every pair of features.
+     * @return symmetric matrix with one row and one column per feature
+     */
+    DoubleMatrix gramMatrix();
+
+    /**
+     * Get the same block in CSR format, e.g. to iterate over its non-zero values.
+     * @return sparse block with the same values
+     */
+    SparseXYMatrix toSparse();
+
+    /**
+     * Get the values of some features as dense matrix.
+     * @param indexes indexes of the features
+     * @return matrix with one row per data point and one column per given index
+     */
+    DoubleMatrix getColumns(int[] indexes);
+}
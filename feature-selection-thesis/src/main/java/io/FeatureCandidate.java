@@ -0,0 +1,68 @@
+package io;
+
+import java.io.Serializable;
+
+/**
+ * Unselected feature of a feature shard. The best feature of a shard comes with its index and
+ * score only; the columns that the driver needs to add it to the selection are fetched for the
+ * overall best one.
+ */
+public class FeatureCandidate implements Serializable
+{
+    private int index;
+    private double score;
+    private double[] column;
+    private double[] eColumn;
+
+    /**
+     * Construct a candidate feature without its columns.
+     * @param index index of the feature
+     * @param score score of the feature (step 11)
+     */
+    public FeatureCandidate(int index, double score)
+    {
+        this(index, score, null, null);
+    }
+
+    /**
+     * Construct a candidate feature with its columns.
+     * @param index index of the feature
+     * @param score score of the feature (step 11)
+     * @param column values of the feature for all data points
+     * @param eColumn column of E that belongs to the feature
+     */
+    public FeatureCandidate(int index, double score, double[] column, double[] eColumn)
+    {
+        this.index = index;
+        this.score = score;
+        this.column = column;
+        this.eColumn = eColumn;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public double[] getColumn() {
+        return column;
+    }
+
+    public double[] getEColumn() {
+        return eColumn;
+    }
+
+    /**
+     * Check whether this candidate is better than another one. Ties go to the lower index,
+     * like argmax over all features.
+     * @param other another candidate, may be null
+     * @return true if this candidate should be selected instead of the other one
+     */
+    public boolean isBetterThan(FeatureCandidate other)
+    {
+        return other == null || score > other.score || (score == other.score && index < other.index);
+    }
+}
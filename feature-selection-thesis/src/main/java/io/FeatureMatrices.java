@@ -1,6 +1,7 @@
 package io;
 
 import org.jblas.DoubleMatrix;
+import org.jblas.Solve;
 
 import java.io.Serializable;
 
@@ -15,6 +16,13 @@ public class FeatureMatrices implements Serializable
     private DoubleMatrix matrixC12;
     private DoubleMatrix matrixV2;
 
+    /**
+     * Create empty matrices of scores, the zero value of an aggregation.
+     */
+    public FeatureMatrices()
+    {
+    }
+
     /**
      * Construct compounds of matrix of scores
      * @param matrixA A matrix of selected features
@@ -73,17 +81,71 @@ public class FeatureMatrices implements Serializable
     }
 
     /**
-     * One score can be added to other scores.
+     * Compute the blocks A and C12 of one partition (step 10): the cross-products of the selected
+     * features with all features, split into selected and unselected ones.
+     * @param matrix data block of the partition
+     * @param selected indexes of the selected features
+     * @param unselected indexes of the unselected features
+     * @return matrices with A and C12 of the partition only
+     */
+    public static FeatureMatrices fromBlock(FeatureBlock matrix, int[] selected, int[] unselected)
+    {
+        DoubleMatrix x1 = matrix.getColumns(selected);
+        DoubleMatrix matrixC1 = matrix.crossProduct(x1);
+
+        DoubleMatrix matrixA = matrixC1.getColumns(selected);
+        DoubleMatrix matrixC12 = matrixC1.getColumns(unselected);
+
+        return new FeatureMatrices(matrixA, null, null, matrixC12, null);
+    }
+
+    /**
+     * One score can be added to other scores. The addition is done in place.
      * @param featureMatrices matrix of scores to be added
-     * @return matrix of scores after addition operation
+     * @return this matrix of scores after addition operation
      */
     public FeatureMatrices add(FeatureMatrices featureMatrices){
-        matrixA = matrixA.add(featureMatrices.getMatrixA());
-        matrixCY1 = matrixCY1.add(featureMatrices.getMatrixCY1());
-        matrixCY2 = matrixCY2.add(featureMatrices.getMatrixCY2());
-        matrixC12 = matrixC12.add(featureMatrices.getMatrixC12());
-        matrixV2 = matrixV2.add(featureMatrices.getMatrixV2());
+        matrixA = add(matrixA, featureMatrices.getMatrixA());
+        matrixCY1 = add(matrixCY1, featureMatrices.getMatrixCY1());
+        matrixCY2 = add(matrixCY2, featureMatrices.getMatrixCY2());
+        matrixC12 = add(matrixC12, featureMatrices.getMatrixC12());
+        matrixV2 = add(matrixV2, featureMatrices.getMatrixV2());
 
         return this;
     }
+
+    /**
+     * Add a matrix in place, where a missing (null) matrix counts as zero.
+     */
+    private static DoubleMatrix add(DoubleMatrix total, DoubleMatrix matrix){
+        if(total == null) {
+            return matrix;
+        }
+
+        return matrix == null ? total : total.addi(matrix);
+    }
+
+    /**
+     * Compute the scores of the unselected features (step 11).
+     * @return row vector with one score per unselected feature, NaN for linearly dependent features
+     */
+    public DoubleMatrix computeScores(){
+        DoubleMatrix matrixB = Solve.pinv(matrixA).mmul(matrixC12);
+        DoubleMatrix matrixH = matrixCY1.mmul(matrixB);
+        DoubleMatrix matrixG = matrixCY2.sub(matrixH);
+
+        DoubleMatrix g = DoubleMatrix.ones(matrixG.getRows()).transpose().mmul(matrixG.mul(matrixG));
+        DoubleMatrix w = matrixV2.sub(DoubleMatrix.ones(matrixC12.getRows()).transpose().mmul(matrixC12.mul(matrixB)));
+
+        DoubleMatrix s = g.div(w);
+
+        // features that are linearly dependent on the selected ones have no residual left
+        for(int j = 0; j < s.length; j++){
+            if(!(w.get(j) > CholeskyFactor.PIVOT_TOLERANCE * matrixV2.get(j))){
+                s.put(j, Double.NaN);
+            }
+        }
+
+        return s;
+    }
 }
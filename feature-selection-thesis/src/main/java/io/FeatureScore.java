@@ -39,13 +39,21 @@ public class FeatureScore implements Serializable
     }
 
     /**
-     * One feature score can be added with another feature score.
+     * One feature score can be added with another feature score. The addition is done in place.
      * @param anotherScore Another feature score that is to be added to this feature score
-     * @return A feature score object that consist of updated E matrix and v vector after addition operation
+     * @return this feature score with updated E matrix and v vector after addition operation
      */
     public FeatureScore add(FeatureScore anotherScore) {
-        DoubleMatrix newE = eMatrix.add(anotherScore.getEMatrix());
-        DoubleMatrix newV = vMatrix.add(anotherScore.getVMatrix());
-        return new FeatureScore(newE, newV);
+        eMatrix.addi(anotherScore.getEMatrix());
+        vMatrix.addi(anotherScore.getVMatrix());
+        return this;
+    }
+
+    /**
+     * Compute the initial score of every feature (step 3): s = 1^T (E.*E) ./ v.
+     * @return row vector with one score per feature
+     */
+    public DoubleMatrix computeScores() {
+        return eMatrix.mul(eMatrix).columnSums().div(vMatrix);
     }
 }
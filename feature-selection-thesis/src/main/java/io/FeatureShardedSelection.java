@@ -0,0 +1,324 @@
+package io;
+
+import org.apache.spark.api.java.JavaPairRDD;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.broadcast.Broadcast;
+import org.jblas.DoubleMatrix;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Greedy selection on data that is partitioned by features instead of data points. Suited for
+ * wide data like Dorothea (800 data points, 100,000 features): the shards score their own
+ * features and return only the index and score of their best candidate, so the traffic per
+ * iteration is O(shards) instead of O(l*d), plus the column of the overall best feature, which
+ * is fetched from its shard. The driver keeps the selected columns and the Cholesky factor of A.
+ */
+public class FeatureShardedSelection
+{
+    /**
+     * Number of iterations after which the lineage of the shards is truncated.
+     */
+    private static final int CHECKPOINT_INTERVAL = 50;
+
+    private SelectionMetrics metrics;
+    private JavaRDD<ColumnShard> shards;
+
+    /**
+     * Transpose the data blocks into feature shards.
+     * @param metrics metrics of the run, the broadcasts go through it
+     * @param xyMatrix data blocks, one per partition
+     * @param features number of features
+     * @param numberOfShards number of feature shards
+     * @param responses response table with one row of Y per class
+     * @param lazy true to refresh only the scores of the best candidates in each shard
+     */
+    public FeatureShardedSelection(SelectionMetrics metrics, JavaRDD<FeatureBlock> xyMatrix, int features,
+                                   int numberOfShards, DoubleMatrix responses, boolean lazy)
+    {
+        this.metrics = metrics;
+
+        // class of all data points, in partition order
+        List<int[]> blockClasses = xyMatrix.map(matrix -> matrix.getClasses()).collect();
+        int offsets[] = new int[blockClasses.size() + 1];
+
+        for(int i = 0; i < blockClasses.size(); i++) {
+            offsets[i + 1] = offsets[i] + blockClasses.get(i).length;
+        }
+
+        int rows = offsets[blockClasses.size()];
+        int classes[] = new int[rows];
+
+        for(int i = 0; i < blockClasses.size(); i++) {
+            System.arraycopy(blockClasses.get(i), 0, classes, offsets[i], blockClasses.get(i).length);
+        }
+
+        int width = (features + numberOfShards - 1) / numberOfShards;
+        Broadcast<int[]> bcOffsets = metrics.broadcast(offsets);
+        Broadcast<int[]> bcClasses = metrics.broadcast(classes);
+
+        JavaRDD<Tuple2<Integer, Tuple2<Integer, SparseXYMatrix>>> pieces = xyMatrix.mapPartitionsWithIndex((partition, iterator) -> {
+            List<Tuple2<Integer, Tuple2<Integer, SparseXYMatrix>>> list = new ArrayList<>();
+
+            while(iterator.hasNext()) {
+                SparseXYMatrix ranges[] = iterator.next().toSparse().splitColumns(width);
+
+                for(int r = 0; r < ranges.length; r++) {
+                    list.add(new Tuple2<>(r, new Tuple2<>(bcOffsets.value()[partition], ranges[r])));
+                }
+            }
+
+            return list.iterator();
+        }, false);
+
+        shards = JavaPairRDD.fromJavaRDD(pieces).groupByKey(numberOfShards)
+                .map(shard -> createShard(shard._1() * width, rows, shard._2(), bcClasses.value(), responses, lazy)).cache();
+    }
+
+    /**
+     * Combine the pieces of one feature range from all data blocks into a shard.
+     * @param start index of the first feature of the range
+     * @param rows number of data points
+     * @param pieces row offset and values of the range for each data block
+     * @param classes class of all data points
+     * @param responses response table with one row of Y per class
+     * @param lazy true to refresh only the scores of the best candidates
+     * @return feature shard in CSC format
+     */
+    private static ColumnShard createShard(int start, int rows, Iterable<Tuple2<Integer, SparseXYMatrix>> pieces,
+                                           int[] classes, DoubleMatrix responses, boolean lazy)
+    {
+        int columns = 0;
+
+        for(Tuple2<Integer, SparseXYMatrix> piece : pieces) {
+            columns = piece._2().getColumns();
+        }
+
+        int columnPointers[] = new int[columns + 1];
+
+        for(Tuple2<Integer, SparseXYMatrix> piece : pieces) {
+            for(int j : piece._2().getColumnIndexes()) {
+                columnPointers[j + 1]++;
+            }
+        }
+
+        for(int j = 0; j < columns; j++) {
+            columnPointers[j + 1] += columnPointers[j];
+        }
+
+        int next[] = columnPointers.clone();
+        int rowIndexes[] = new int[columnPointers[columns]];
+        double values[] = new double[columnPointers[columns]];
+
+        for(Tuple2<Integer, SparseXYMatrix> piece : pieces) {
+            SparseXYMatrix block = piece._2();
+
+            for(int i = 0; i < block.getRows(); i++) {
+                for(int p = block.getRowPointers()[i]; p < block.getRowPointers()[i + 1]; p++) {
+                    int j = block.getColumnIndexes()[p];
+                    rowIndexes[next[j]] = piece._1() + i;
+                    values[next[j]++] = block.getValues()[p];
+                }
+            }
+        }
+
+        return new ColumnShard(start, rows, columnPointers, rowIndexes, values, classes, responses, lazy);
+    }
+
+    /**
+     * Select the best features, one Spark job per iteration.
+     * @param loopNumber number of features to be selected
+     * @param saved saved state to continue from, the selected features are recorded in it
+     * @return index of selected features in the order of selection
+     */
+    public List<Integer> select(int loopNumber, SelectionCheckpoint saved)
+    {
+        List<Integer> selected = new ArrayList<>();
+        List<double[]> factorColumns = new ArrayList<>();
+        List<double[]> rowsU = new ArrayList<>();
+        CholeskyFactor factor = new CholeskyFactor();
+
+        JavaRDD<ColumnShard> state = shards;
+        JavaRDD<ColumnShard> checkpoint = shards;
+
+        // updates in the lineage of the state since the last checkpoint, destroyed when it is truncated
+        List<Broadcast<?>> lineage = new ArrayList<>();
+
+        if(!saved.getSelected().isEmpty()) {
+            state = resume(saved, loopNumber, selected, factor, factorColumns, rowsU, lineage);
+        }
+
+        FeatureCandidate best = selected.size() < loopNumber ? getBest(state) : null;
+
+        while(best != null && selected.size() < loopNumber)
+        {
+            selected.add(best.getIndex());
+            saved.select(best.getIndex(), best.getScore());
+            saved.checkpointIfDue();
+
+            if(selected.size() == loopNumber) {
+                break;
+            }
+
+            // step 8-11 in the shards
+            metrics.begin("iteration", selected.size() + 1);
+            FeatureCandidate column = getCandidate(state, best.getIndex());
+            Broadcast<ShardUpdate> bcUpdate = metrics.broadcast(createUpdate(column, factor, factorColumns, rowsU));
+            lineage.add(bcUpdate);
+            JavaRDD<ColumnShard> next = state.map(shard -> shard.update(bcUpdate.value())).cache();
+
+            if(selected.size() % CHECKPOINT_INTERVAL == 0) {
+                next.rdd().localCheckpoint();
+            }
+
+            best = getBest(next);
+
+            if(state != checkpoint) {
+                state.unpersist();
+            }
+
+            if(selected.size() % CHECKPOINT_INTERVAL == 0) {
+                if(checkpoint != shards) {
+                    checkpoint.unpersist();
+                }
+                checkpoint = next;
+
+                // the checkpointed shards are still sent with their own update, which is kept
+                List<Broadcast<?>> truncated = lineage.subList(0, lineage.size() - 1);
+                truncated.forEach(Broadcast::destroy);
+                truncated.clear();
+            }
+
+            state = next;
+        }
+
+        lineage.forEach(Broadcast::destroy);
+
+        return selected;
+    }
+
+    /**
+     * Border the Cholesky factor of A with the new feature, using the selected columns kept on the driver.
+     * @param best selected feature
+     * @param factor Cholesky factor of A
+     * @param factorColumns columns of the features in the factor
+     * @param rowsU rows of U = L^-1 CY1^T
+     * @return update of the shards
+     */
+    private static ShardUpdate createUpdate(FeatureCandidate best, CholeskyFactor factor, List<double[]> factorColumns, List<double[]> rowsU)
+    {
+        double f[] = best.getColumn();
+        double a[] = new double[factorColumns.size()];
+
+        for(int r = 0; r < a.length; r++) {
+            a[r] = dot(factorColumns.get(r), f);
+        }
+
+        double border[] = factor.add(a, dot(f, f));
+        double u[] = null;
+
+        if(border != null) {
+            u = CholeskyFactor.eliminate(best.getEColumn(), border, rowsU);
+            rowsU.add(u);
+            factorColumns.add(f);
+        }
+
+        return new ShardUpdate(best.getIndex(), f, border, u);
+    }
+
+    /**
+     * Continue from saved selected features: their columns are read from the shards again, the
+     * factor is rebuilt on the driver and all updates are applied to the shards in one job.
+     * @param saved saved state
+     * @param loopNumber number of features to be selected
+     * @param selected selected features, filled with the saved ones
+     * @param factor Cholesky factor of A
+     * @param factorColumns columns of the features in the factor
+     * @param rowsU rows of U = L^-1 CY1^T
+     * @param lineage broadcasts in the lineage of the shards, the update is added
+     * @return shards with all saved features added
+     */
+    private JavaRDD<ColumnShard> resume(SelectionCheckpoint saved, int loopNumber, List<Integer> selected,
+                                        CholeskyFactor factor, List<double[]> factorColumns, List<double[]> rowsU,
+                                        List<Broadcast<?>> lineage)
+    {
+        List<Integer> indexes = saved.getSelected().subList(0, Math.min(saved.getSelected().size(), loopNumber));
+        metrics.begin("resume");
+        Broadcast<List<Integer>> bcIndexes = metrics.broadcast(new ArrayList<>(indexes));
+        Map<Integer, FeatureCandidate> candidates = new HashMap<>();
+
+        for(FeatureCandidate candidate : shards.flatMap(shard -> shard.getCandidates(bcIndexes.value())).collect()) {
+            candidates.put(candidate.getIndex(), candidate);
+        }
+
+        bcIndexes.destroy();
+
+        List<ShardUpdate> updates = new ArrayList<>();
+
+        for(int index : indexes) {
+            selected.add(index);
+
+            if(selected.size() < loopNumber) {
+                updates.add(createUpdate(candidates.get(index), factor, factorColumns, rowsU));
+            }
+        }
+
+        Broadcast<List<ShardUpdate>> bcUpdates = metrics.broadcast(updates);
+        lineage.add(bcUpdates);
+
+        return shards.map(shard -> {
+            for(ShardUpdate update : bcUpdates.value()) {
+                shard = shard.update(update);
+            }
+
+            return shard;
+        }).cache();
+    }
+
+    /**
+     * Collect the best candidate of every shard and pick the overall best.
+     * @param state feature shards
+     * @return best feature without its columns, or null if no feature has a valid score
+     */
+    private static FeatureCandidate getBest(JavaRDD<ColumnShard> state)
+    {
+        FeatureCandidate best = null;
+
+        for(FeatureCandidate candidate : state.map(shard -> shard.getBest()).collect()) {
+            if(candidate != null && candidate.isBetterThan(best)) {
+                best = candidate;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Fetch the columns of one feature from its shard.
+     * @param state feature shards
+     * @param index index of the feature
+     * @return feature with its columns
+     */
+    private static FeatureCandidate getCandidate(JavaRDD<ColumnShard> state, int index)
+    {
+        List<Integer> indexes = Collections.singletonList(index);
+
+        return state.flatMap(shard -> shard.getCandidates(indexes)).collect().get(0);
+    }
+
+    private static double dot(double[] a, double[] b)
+    {
+        double sum = 0;
+
+        for(int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+
+        return sum;
+    }
+}
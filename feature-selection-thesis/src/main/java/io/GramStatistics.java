@@ -0,0 +1,83 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.Serializable;
+
+/**
+ * Sufficient statistics of the whole selection: the Gram matrix X^T X and the column sums of X
+ * per class, from which E = Y^T X follows.
+ * Every quantity of steps 1-11 can be derived from them, so once they are on the driver the
+ * greedy loop needs no further Spark jobs.
+ */
+public class GramStatistics implements Serializable
+{
+    private DoubleMatrix gramMatrix;
+    private DoubleMatrix classSums;
+
+    /**
+     * Add the statistics of one partition.
+     * @param block features and classes of the partition
+     * @return this object after addition operation
+     */
+    public GramStatistics add(FeatureBlock block)
+    {
+        return add(block.gramMatrix(), block.classSums());
+    }
+
+    /**
+     * Statistics of one set of partitions can be added to other statistics.
+     * @param other statistics to be added
+     * @return this object after addition operation
+     */
+    public GramStatistics merge(GramStatistics other)
+    {
+        if(other.gramMatrix == null) {
+            return this;
+        }
+
+        return add(other.gramMatrix, other.classSums);
+    }
+
+    private GramStatistics add(DoubleMatrix gram, DoubleMatrix sums)
+    {
+        if(gramMatrix == null) {
+            gramMatrix = gram;
+            classSums = sums;
+        } else {
+            gramMatrix.addi(gram);
+            classSums.addi(sums);
+        }
+
+        return this;
+    }
+
+    /**
+     * Get the Gram matrix.
+     * @return X^T X
+     */
+    public DoubleMatrix getGramMatrix()
+    {
+        return gramMatrix;
+    }
+
+    /**
+     * Get E and v, where v is the diagonal of the Gram matrix.
+     * @param responses response table with one row of Y per class
+     * @return feature score of step 1-3
+     */
+    public FeatureScore getFeatureScore(DoubleMatrix responses)
+    {
+        return new FeatureScore(ClassStatistics.getEMatrix(responses, classSums), gramMatrix.diag().transpose());
+    }
+
+    /**
+     * Get the memory the Gram matrix needs for a number of features.
+     * @param features number of features
+     * @return size in bytes
+     */
+    public static long getSize(int features)
+    {
+        return 8L * features * features;
+    }
+}
@@ -0,0 +1,242 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Driver-side state of the greedy selection (steps 8-11). Everything step 10 needs is derived
+ * from the cross-products X^T f of the selected features, which are computed once per selected
+ * feature in step 8. A = X1^T X1 is kept as Cholesky factor and the scores of step 11 are
+ * updated with one rank-one update per selected feature (see ResidualScores).
+ */
+public class GreedySelection
+{
+    private DoubleMatrix matrixE;
+    private DoubleMatrix vectorV;
+
+    /**
+     * Cholesky factor of A, for the selected features that are not linearly dependent.
+     */
+    private CholeskyFactor factor = new CholeskyFactor();
+
+    /**
+     * Rows of U = L^-1 CY1^T, one per feature in the factor.
+     */
+    private List<double[]> rowsU = new ArrayList<>();
+
+    private ResidualScores residuals;
+
+    /**
+     * Scores computed with the pseudo-inverse for the last added feature, if it was dependent.
+     */
+    private DoubleMatrix fallbackScores;
+
+    private List<Integer> selected = new ArrayList<>();
+    private List<Integer> factorIndexes = new ArrayList<>();
+    private boolean[] isSelected;
+
+    /**
+     * Start the selection from the feature scores of step 1-3.
+     * @param featureScore E matrix and v vector of all features
+     * @param lazy true to refresh only the scores of the best candidates (see ResidualScores)
+     */
+    public GreedySelection(FeatureScore featureScore, boolean lazy)
+    {
+        matrixE = featureScore.getEMatrix();
+        vectorV = featureScore.getVMatrix();
+        residuals = new ResidualScores(matrixE, vectorV, lazy);
+        isSelected = new boolean[matrixE.columns];
+    }
+
+    /**
+     * Add a selected feature (step 9).
+     * @param index index of the selected feature
+     * @param crossProducts X^T f of the selected feature f (step 8)
+     */
+    public void add(int index, DoubleMatrix crossProducts)
+    {
+        double a[] = new double[factor.size()];
+
+        for(int i = 0; i < a.length; i++) {
+            a[i] = crossProducts.get(factorIndexes.get(i));
+        }
+
+        double border[] = factor.add(a, crossProducts.get(index));
+        selected.add(index);
+        isSelected[index] = true;
+
+        if(border == null) {
+            fallbackScores = getPseudoInverseScores(index, a, crossProducts);
+            return;
+        }
+
+        // new row of U: (CY1[:, index] - U^T y) / pivot
+        double u[] = CholeskyFactor.eliminate(matrixE.getColumn(index).toArray(), border, rowsU);
+
+        residuals.update(crossProducts.toArray(), border, u);
+        rowsU.add(u);
+        factorIndexes.add(index);
+        fallbackScores = null;
+    }
+
+    /**
+     * Get the number of features added so far.
+     * @return number of selected features
+     */
+    public int size()
+    {
+        return selected.size();
+    }
+
+    /**
+     * Get indexes of the features that are not selected yet.
+     * @return unselected indexes in ascending order
+     */
+    public int[] getUnselectedIndexes()
+    {
+        int unselected[] = new int[isSelected.length - selected.size()];
+
+        for(int i = 0, j = 0; i < isSelected.length; i++) {
+            if(!isSelected[i]) {
+                unselected[j++] = i;
+            }
+        }
+
+        return unselected;
+    }
+
+    /**
+     * Score all unselected features (step 10-11) and pick the best one.
+     * @return index of the next feature, or -1 if no feature has a valid score
+     */
+    public int nextFeature()
+    {
+        if(fallbackScores != null) {
+            return getIndexOfMaxValue(fallbackScores, getUnselectedIndexes());
+        }
+
+        return residuals.getBest(isSelected);
+    }
+
+    /**
+     * Get the current score (step 11) of an unselected feature.
+     * @param index index of the feature
+     * @return score of the feature, NaN if it has no valid score
+     */
+    public double getScore(int index)
+    {
+        if(fallbackScores != null) {
+            return fallbackScores.get(Arrays.binarySearch(getUnselectedIndexes(), index));
+        }
+
+        return residuals.getScore(index);
+    }
+
+    /**
+     * Find the unselected features with the highest current scores.
+     * @param count maximum number of features
+     * @return indexes of the best features with a valid score, best first (ties to the lower index)
+     */
+    public int[] nextFeatures(int count)
+    {
+        int unselected[] = getUnselectedIndexes();
+        double scores[] = new double[isSelected.length];
+        List<Integer> candidates = new ArrayList<>();
+
+        for(int i = 0; i < unselected.length; i++) {
+            int j = unselected[i];
+            scores[j] = fallbackScores != null ? fallbackScores.get(i) : residuals.getScore(j);
+
+            if(!Double.isNaN(scores[j])) {
+                candidates.add(j);
+            }
+        }
+
+        candidates.sort((a, b) -> scores[a] != scores[b] ? Double.compare(scores[b], scores[a]) : Integer.compare(a, b));
+
+        int best[] = new int[Math.min(count, candidates.size())];
+
+        for(int i = 0; i < best.length; i++) {
+            best[i] = candidates.get(i);
+        }
+
+        return best;
+    }
+
+    /**
+     * Compute the scores of step 11 with the pseudo-inverse of A. Only used when the new feature
+     * is numerically dependent on the factor, i.e. its pivot is degenerate.
+     * @param index index of the dependent feature
+     * @param a cross-products of the feature with the features in the factor
+     * @param crossProducts X^T f of the dependent feature
+     * @return scores of the unselected features
+     */
+    private DoubleMatrix getPseudoInverseScores(int index, double[] a, DoubleMatrix crossProducts)
+    {
+        int l = factor.size();
+        int unselected[] = getUnselectedIndexes();
+
+        // A = L L^T and C = L Z for the features in the factor, bordered with the dependent feature
+        DoubleMatrix matrixL = new DoubleMatrix(l, l);
+        DoubleMatrix matrixZ = new DoubleMatrix(l, unselected.length);
+
+        for(int i = 0; i < l; i++) {
+            double row[] = factor.getRows().get(i);
+            double rowZ[] = residuals.getRowsZ().get(i);
+
+            for(int j = 0; j <= i; j++) {
+                matrixL.put(i, j, row[j]);
+            }
+
+            for(int j = 0; j < unselected.length; j++) {
+                matrixZ.put(i, j, rowZ[unselected[j]]);
+            }
+        }
+
+        DoubleMatrix border = new DoubleMatrix(l, 1, a);
+        DoubleMatrix matrixA = DoubleMatrix.concatVertically(
+                DoubleMatrix.concatHorizontally(matrixL.mmul(matrixL.transpose()), border),
+                DoubleMatrix.concatHorizontally(border.transpose(), new DoubleMatrix(1, 1, crossProducts.get(index))));
+        DoubleMatrix matrixC12 = DoubleMatrix.concatVertically(matrixL.mmul(matrixZ),
+                crossProducts.getRows(unselected).transpose());
+
+        int columnsY1[] = new int[l + 1];
+
+        for(int i = 0; i < l; i++) {
+            columnsY1[i] = factorIndexes.get(i);
+        }
+
+        columnsY1[l] = index;
+
+        FeatureMatrices featureMatrices = new FeatureMatrices(matrixA, matrixE.getColumns(columnsY1),
+                matrixE.getColumns(unselected), matrixC12, vectorV.getColumns(unselected));
+
+        return featureMatrices.computeScores();
+    }
+
+    /**
+     * Find the feature with the highest score, ignoring invalid (NaN) scores.
+     * @param s scores of the candidate features
+     * @param candidates index of the feature for each score
+     * @return index of the best feature, or -1 if no score is valid
+     */
+    public static int getIndexOfMaxValue(DoubleMatrix s, int candidates[])
+    {
+        int idx = -1;
+        double value = Double.NEGATIVE_INFINITY;
+
+        for(int i = 0; i < candidates.length; i++) {
+            double score = s.get(i);
+
+            if(!Double.isNaN(score) && (idx < 0 || score > value)) {
+                value = score;
+                idx = candidates[i];
+            }
+        }
+
+        return idx;
+    }
+}
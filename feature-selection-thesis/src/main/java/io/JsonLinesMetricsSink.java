@@ -0,0 +1,56 @@
+package io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends the metrics of every stage as one JSON object per line to a local file.
+ */
+public class JsonLinesMetricsSink implements MetricsSink
+{
+    private String fileName;
+    private Writer out;
+
+    /**
+     * Open the file for appending.
+     * @param fileName local file name
+     * @throws IOException if the file cannot be opened
+     */
+    public JsonLinesMetricsSink(String fileName) throws IOException
+    {
+        this.fileName = fileName;
+        this.out = new OutputStreamWriter(new FileOutputStream(fileName, true), StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public synchronized void record(StageMetrics metrics)
+    {
+        if(out == null) {
+            return;
+        }
+
+        try {
+            out.write(metrics.toJson());
+            out.write('\n');
+            out.flush();
+        } catch(IOException e) {
+            // the run goes on without the file
+            System.out.println("Cannot write metrics to " + fileName + ": " + e);
+            close();
+        }
+    }
+
+    @Override
+    public synchronized void close()
+    {
+        try {
+            if(out != null) {
+                out.close();
+            }
+        } catch(IOException e) {
+            System.out.println("Cannot close " + fileName + ": " + e);
+        }
+
+        out = null;
+    }
+}
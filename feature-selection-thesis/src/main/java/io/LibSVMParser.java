@@ -0,0 +1,221 @@
+package io;
+
+import java.util.Arrays;
+
+/**
+ * Parser for lines in libsvm format, e.g. "1 4:1 96:0.5". Each line is scanned once and the
+ * label, feature indexes and values are written into reusable primitive buffers, so parsing
+ * creates no objects per value. One parser is used per partition, it is not thread-safe.
+ */
+public class LibSVMParser
+{
+    /**
+     * Powers of ten that are exact as double.
+     */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1.0;
+
+        for(int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private String line;
+    private int position;
+    private double label;
+    private int size;
+    private int[] indexes = new int[64];
+    private double[] values = new double[64];
+
+    /**
+     * Parse one line. Afterwards the label and the non-zero values of the line can be read.
+     * @param line line in libsvm format
+     * @return false if the line is empty
+     * @throws NumberFormatException if the line is malformed, e.g. a value without feature index
+     */
+    public boolean parse(String line)
+    {
+        this.line = line;
+        this.position = 0;
+        this.size = 0;
+
+        skipSpaces();
+
+        if(position == line.length()) {
+            return false;
+        }
+
+        label = parseDouble(nextToken(' '), position);
+
+        while(skipSpaces() < line.length()) {
+            int index = parseInt(nextToken(':'), position);
+
+            if(position == line.length() || line.charAt(position) != ':') {
+                throw new NumberFormatException("Missing ':' after feature index " + index + " in: " + line);
+            }
+
+            position++;
+            int start = nextToken(' ');
+
+            if(start == position) {
+                throw new NumberFormatException("Missing value of feature index " + index + " in: " + line);
+            }
+
+            double value = parseDouble(start, position);
+
+            if(value != 0) {
+                if(size == indexes.length) {
+                    indexes = Arrays.copyOf(indexes, size * 2);
+                    values = Arrays.copyOf(values, size * 2);
+                }
+
+                indexes[size] = index - 1;
+                values[size++] = value;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the label (first column) of the last parsed line.
+     * @return class label
+     */
+    public double getLabel()
+    {
+        return label;
+    }
+
+    /**
+     * Get the number of non-zero values of the last parsed line.
+     * @return number of values
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * Get the feature indexes of the last parsed line, starting at 0 (libsvm starts at 1).
+     * Only the first getSize() entries are valid.
+     * @return buffer with feature indexes
+     */
+    public int[] getIndexes()
+    {
+        return indexes;
+    }
+
+    /**
+     * Get the non-zero values of the last parsed line. Only the first getSize() entries are valid.
+     * @return buffer with values
+     */
+    public double[] getValues()
+    {
+        return values;
+    }
+
+    private int skipSpaces()
+    {
+        while(position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * Move to the end of the current token.
+     * @param separator character that ends the token besides whitespace
+     * @return start of the token
+     */
+    private int nextToken(char separator)
+    {
+        int start = position;
+
+        while(position < line.length() && line.charAt(position) != separator && !Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+
+        return start;
+    }
+
+    private int parseInt(int start, int end)
+    {
+        if(start == end) {
+            throw new NumberFormatException("Missing feature index in: " + line);
+        }
+
+        int result = 0;
+
+        for(int i = start; i < end; i++) {
+            int digit = line.charAt(i) - '0';
+
+            if(digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid feature index in: " + line);
+            }
+
+            if(result > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException("Feature index " + line.substring(start, end) + " out of range in: " + line);
+            }
+
+            result = result * 10 + digit;
+        }
+
+        if(result < 1) {
+            throw new NumberFormatException("Feature index " + result + " out of range, libsvm indexes start at 1, in: " + line);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parse a decimal number. Numbers like "1", "-0.25" or "320.5" are computed as integer
+     * mantissa divided by a power of ten, which is exact (correctly rounded) as long as both
+     * are exact doubles. Other numbers (exponents, many digits) use Double.parseDouble.
+     */
+    private double parseDouble(int start, int end)
+    {
+        int i = start;
+        boolean negative = false;
+
+        if(i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+
+        for(; i < end; i++) {
+            char c = line.charAt(i);
+
+            if(c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+
+                if(fraction >= 0) {
+                    fraction++;
+                }
+            } else if(c == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                break;
+            }
+        }
+
+        if(i < end || digits == 0 || digits > 15 || fraction >= POWERS_OF_TEN.length) {
+            try {
+                return Double.parseDouble(line.substring(start, end));
+            } catch(NumberFormatException e) {
+                throw new NumberFormatException("Invalid number \"" + line.substring(start, end) + "\" in: " + line);
+            }
+        }
+
+        double value = fraction > 0 ? mantissa / POWERS_OF_TEN[fraction] : mantissa;
+
+        return negative ? -value : value;
+    }
+}
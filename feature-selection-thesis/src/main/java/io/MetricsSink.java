@@ -0,0 +1,22 @@
+package io;
+
+/**
+ * Receives the metrics of every stage of a run when all of its Spark jobs are done. Sinks are
+ * added to the input reader (FSInputReader.addMetricsSink) or configured (spark.fs.metrics.file).
+ */
+public interface MetricsSink
+{
+    /**
+     * Record the metrics of one stage. Called from the driver or from the Spark listener thread,
+     * one stage at a time.
+     * @param metrics finished stage
+     */
+    void record(StageMetrics metrics);
+
+    /**
+     * Called once after the last stage of the run.
+     */
+    default void close()
+    {
+    }
+}
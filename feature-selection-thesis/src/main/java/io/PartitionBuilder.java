@@ -0,0 +1,188 @@
+package io;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Collects the rows of one partition in primitive arrays and profiles them while they are added.
+ * The partition is parsed once: the profiles of all partitions are merged into the dataset
+ * profile, which gives the number of features, the classes and the storage, and the feature
+ * block is then created from the collected rows.
+ */
+public class PartitionBuilder implements Serializable
+{
+    /**
+     * Storage of a feature block.
+     */
+    public enum Storage { BITSET, SPARSE, DENSE }
+
+    private int rows = 0;
+    private int nonZeros = 0;
+    private int[] rowPointers = new int[64];
+    private double[] labels = new double[64];
+    private int[] columnIndexes = new int[1024];
+    private double[] values = new double[1024];
+    private long firstRowKey;
+    private DatasetProfile profile = new DatasetProfile();
+
+    /**
+     * Create an empty partition.
+     * @param firstRowKey key of the first row, row i gets firstRowKey + i; keys have to be unique in the dataset
+     */
+    public PartitionBuilder(long firstRowKey)
+    {
+        this.firstRowKey = firstRowKey;
+    }
+
+    /**
+     * Add the row that was last parsed by a libsvm parser.
+     * @param parser parser holding the label and the non-zero values of the row
+     */
+    public void addRow(LibSVMParser parser)
+    {
+        addRow(parser.getLabel(), parser.getIndexes(), parser.getValues(), parser.getSize());
+    }
+
+    /**
+     * Add the row that was last read from a binary dataset.
+     * @param reader reader holding the label and the non-zero values of the row
+     */
+    public void addRow(BinaryRowReader reader)
+    {
+        addRow(reader.getLabel(), reader.getIndexes(), reader.getValues(), reader.getSize());
+    }
+
+    /**
+     * Add one row.
+     * @param label class label
+     * @param rowIndexes feature indexes of the non-zero values, starting at 0, in any order
+     * @param rowValues non-zero values
+     * @param size number of non-zero values
+     */
+    public void addRow(double label, int[] rowIndexes, double[] rowValues, int size)
+    {
+        if(rows + 2 > rowPointers.length) {
+            rowPointers = Arrays.copyOf(rowPointers, rowPointers.length * 2);
+            labels = Arrays.copyOf(labels, rowPointers.length);
+        }
+
+        if(nonZeros + size > values.length) {
+            int capacity = Math.max(values.length * 2, nonZeros + size);
+            columnIndexes = Arrays.copyOf(columnIndexes, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        System.arraycopy(rowIndexes, 0, columnIndexes, nonZeros, size);
+        System.arraycopy(rowValues, 0, values, nonZeros, size);
+        size = sortRow(nonZeros, nonZeros + size) - nonZeros;
+        profile.add(label, columnIndexes, values, nonZeros, nonZeros + size, firstRowKey + rows);
+
+        nonZeros += size;
+        labels[rows] = label;
+        rowPointers[++rows] = nonZeros;
+    }
+
+    /**
+     * Sort the non-zero values of a row by ascending column index, as the feature blocks expect.
+     * Rows from a libsvm file are usually sorted already; of repeated indexes the last value is
+     * kept, as in a dense row.
+     * @param start position of the first value of the row
+     * @param end position after the last value of the row
+     * @return position after the last value of the sorted row
+     */
+    private int sortRow(int start, int end)
+    {
+        boolean sorted = true;
+
+        for(int p = start + 1; p < end && sorted; p++) {
+            sorted = columnIndexes[p - 1] < columnIndexes[p];
+        }
+
+        if(sorted) {
+            return end;
+        }
+
+        // sort by index and then by position, so that the last of repeated indexes comes last
+        long keys[] = new long[end - start];
+        double rowValues[] = Arrays.copyOfRange(values, start, end);
+
+        for(int p = start; p < end; p++) {
+            keys[p - start] = ((long) columnIndexes[p] << 32) | (p - start);
+        }
+
+        Arrays.sort(keys);
+        int next = start;
+
+        for(int q = 0; q < keys.length; q++) {
+            int index = (int) (keys[q] >>> 32);
+
+            if(q + 1 < keys.length && (int) (keys[q + 1] >>> 32) == index) {
+                continue;
+            }
+
+            columnIndexes[next] = index;
+            values[next++] = rowValues[(int) keys[q]];
+        }
+
+        return next;
+    }
+
+    /**
+     * Get the profile of the rows in this partition.
+     * @return partition profile
+     */
+    public DatasetProfile getProfile()
+    {
+        return profile;
+    }
+
+    /**
+     * Create the feature block with the kept features only.
+     * @param liveColumns original indexes of the kept features in ascending order, their position is the new index
+     * @param classLabels labels of the dataset in ascending order
+     * @param labelClasses class of each label, i.e. its row in the response table
+     * @param numberOfClasses number of classes
+     * @param storage storage of the feature block
+     * @return feature block of this partition
+     */
+    public FeatureBlock build(int[] liveColumns, double[] classLabels, int[] labelClasses, int numberOfClasses, Storage storage)
+    {
+        int classes[] = new int[rows];
+
+        for(int i = 0; i < rows; i++) {
+            classes[i] = labelClasses[Arrays.binarySearch(classLabels, labels[i])];
+        }
+
+        // compact the column indexes, dropping the values of pruned features
+        int newRowPointers[] = new int[rows + 1];
+        int newColumnIndexes[] = new int[nonZeros];
+        double newValues[] = new double[nonZeros];
+        int size = 0;
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                int j = Arrays.binarySearch(liveColumns, columnIndexes[p]);
+
+                if(j >= 0) {
+                    newColumnIndexes[size] = j;
+                    newValues[size++] = values[p];
+                }
+            }
+
+            newRowPointers[i + 1] = size;
+        }
+
+        SparseXYMatrix sparse = new SparseXYMatrix(liveColumns.length, newRowPointers,
+                Arrays.copyOf(newColumnIndexes, size), Arrays.copyOf(newValues, size),
+                classes, numberOfClasses);
+
+        switch(storage) {
+            case BITSET:
+                return new BitsetXYMatrix(sparse, numberOfClasses);
+            case SPARSE:
+                return sparse;
+            default:
+                return sparse.toDense();
+        }
+    }
+}
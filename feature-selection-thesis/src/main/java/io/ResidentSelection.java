@@ -0,0 +1,221 @@
+package io;
+
+import org.apache.spark.broadcast.Broadcast;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * Selected features of a greedy selection that are kept on the executors between iterations, so
+ * that the tasks do not get the indexes of all selected and unselected features in every
+ * iteration. The driver records the selected features and gives every job a small update: the
+ * features selected since the last snapshot and a broadcast of the snapshot. An executor keeps a
+ * replica of every running selection, keyed by its id, and only adds the features it does not
+ * have yet; an executor without a replica starts from the snapshot. The unselected features are
+ * derived from a mask of the selected ones on the executor.
+ *
+ * A new snapshot is broadcast every SNAPSHOT_INTERVAL features, which keeps the update small, and
+ * the previous one is destroyed.
+ */
+public class ResidentSelection
+{
+    private static final int SNAPSHOT_INTERVAL = 64;
+
+    /**
+     * Replicas on this executor, the least recently used one is dropped if there are more.
+     */
+    private static final int MAX_REPLICAS = 4;
+    private static final Map<String, Replica> REPLICAS = new LinkedHashMap<String, Replica>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Replica> eldest) {
+            return size() > MAX_REPLICAS;
+        }
+    };
+
+    private String id = UUID.randomUUID().toString();
+    private SelectionMetrics metrics;
+    private Replica driverReplica;
+    private Broadcast<int[]> snapshot;
+    private int snapshotSize = 0;
+
+    /**
+     * Create an empty selection.
+     * @param metrics metrics of the run, the snapshots are broadcast through it
+     * @param features number of features
+     */
+    public ResidentSelection(SelectionMetrics metrics, int features)
+    {
+        this.metrics = metrics;
+        this.driverReplica = new Replica(features);
+    }
+
+    /**
+     * Record a selected feature.
+     * @param index index of the feature
+     */
+    public void add(int index)
+    {
+        driverReplica.add(index);
+    }
+
+    /**
+     * Get the selected features on the driver.
+     * @return indexes of the selected features in the order of selection
+     */
+    public int[] getSelected() {
+        return driverReplica.getSelected();
+    }
+
+    /**
+     * Get the unselected features on the driver.
+     * @return indexes of the unselected features in ascending order
+     */
+    public int[] getUnselected() {
+        return driverReplica.getUnselected();
+    }
+
+    /**
+     * Create the update for the next job, with a new snapshot if there are SNAPSHOT_INTERVAL
+     * features since the last one.
+     * @return update to be used in the tasks of the job
+     */
+    public Update getUpdate()
+    {
+        int selected[] = driverReplica.getSelected();
+
+        if(selected.length - snapshotSize >= SNAPSHOT_INTERVAL) {
+            if(snapshot != null) {
+                snapshot.destroy();
+            }
+
+            snapshot = metrics.broadcast(selected);
+            snapshotSize = selected.length;
+        }
+
+        return new Update(id, driverReplica.mask.length, snapshot, snapshotSize,
+                Arrays.copyOfRange(selected, snapshotSize, selected.length));
+    }
+
+    /**
+     * Destroy the snapshot after the selection. The replicas on the executors are dropped when
+     * later selections need their place.
+     */
+    public void close()
+    {
+        if(snapshot != null) {
+            snapshot.destroy();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Features selected since the last snapshot, sent with the tasks of a job.
+     */
+    public static class Update implements Serializable
+    {
+        private String id;
+        private int features;
+        private Broadcast<int[]> snapshot;
+        private int snapshotSize;
+        private int[] tail;
+
+        private Update(String id, int features, Broadcast<int[]> snapshot, int snapshotSize, int[] tail)
+        {
+            this.id = id;
+            this.features = features;
+            this.snapshot = snapshot;
+            this.snapshotSize = snapshotSize;
+            this.tail = tail;
+        }
+
+        /**
+         * Get the replica of the selection on this executor, brought up to date with this update.
+         * @return replica with all features selected so far
+         */
+        public Replica getReplica()
+        {
+            Replica replica;
+
+            synchronized(REPLICAS) {
+                replica = REPLICAS.computeIfAbsent(id, key -> new Replica(features));
+            }
+
+            replica.apply(this);
+
+            return replica;
+        }
+    }
+
+    /**
+     * Selected features of one selection on an executor (or on the driver).
+     */
+    public static class Replica
+    {
+        private int[] selected = new int[16];
+        private boolean[] mask;
+        private int size = 0;
+        private int[] unselected;
+
+        private Replica(int features)
+        {
+            mask = new boolean[features];
+        }
+
+        private synchronized void apply(Update update)
+        {
+            // a replica from a run that is not a prefix of the update starts over from the snapshot
+            if(size < update.snapshotSize || size > update.snapshotSize + update.tail.length) {
+                Arrays.fill(mask, false);
+                size = 0;
+
+                if(update.snapshot != null) {
+                    for(int index : update.snapshot.value()) {
+                        add(index);
+                    }
+                }
+            }
+
+            for(int i = size - update.snapshotSize; i < update.tail.length; i++) {
+                add(update.tail[i]);
+            }
+        }
+
+        private synchronized void add(int index)
+        {
+            if(size == selected.length) {
+                selected = Arrays.copyOf(selected, size * 2);
+            }
+
+            selected[size++] = index;
+            mask[index] = true;
+            unselected = null;
+        }
+
+        /**
+         * Get the selected features.
+         * @return indexes of the selected features in the order of selection
+         */
+        public synchronized int[] getSelected() {
+            return Arrays.copyOf(selected, size);
+        }
+
+        /**
+         * Get the unselected features, derived from the mask of the selected ones.
+         * @return indexes of the unselected features in ascending order, shared by the tasks
+         */
+        public synchronized int[] getUnselected()
+        {
+            if(unselected == null) {
+                unselected = new int[mask.length - size];
+
+                for(int j = 0, u = 0; j < mask.length; j++) {
+                    if(!mask[j]) {
+                        unselected[u++] = j;
+                    }
+                }
+            }
+
+            return unselected;
+        }
+    }
+}
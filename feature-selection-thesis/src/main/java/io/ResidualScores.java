@@ -0,0 +1,390 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scores of step 11 for a range of features, kept up to date with one rank-one update per
+ * selected feature. With A = L L^T and Z = L^-1 X1^T X the matrices of step 11 become
+ * H = CY1 A^-1 C12 = U^T Z and C12 .* B summed per column = 1^T (Z.*Z), so each new row of Z
+ * updates G = CY2 - H and w = v2 - 1^T (C12.*B) in O(d) instead of recomputing them.
+ *
+ * In lazy mode the rows of Z are only computed for a feature when its score is needed. The last
+ * computed score of every feature is kept in a max-heap as upper bound: the best feature is found
+ * by refreshing the top of the heap until a refreshed feature stays on top, instead of updating and
+ * scanning all features. This is exact only if scores never grow when more features are selected,
+ * which g / w does not guarantee (w shrinks as well).
+ */
+public class ResidualScores implements Serializable
+{
+    private int columns;
+    private int responses;
+
+    /**
+     * Rows of Z, one per feature in the Cholesky factor.
+     */
+    private List<double[]> rowsZ = new ArrayList<>();
+
+    /**
+     * G = E - U^T Z, stored column by column.
+     */
+    private double[] matrixG;
+
+    /**
+     * w = v - 1^T (Z.*Z).
+     */
+    private double[] vectorW;
+
+    /**
+     * v of the features, to detect features that became linearly dependent on the selected ones.
+     */
+    private double[] vectorV;
+
+    private boolean lazy;
+
+    /**
+     * Lazy mode: cross-products, borders and rows of U of the selected features, kept until
+     * the rows of Z are computed for a feature, and the number of rows computed per feature.
+     */
+    private List<double[]> crossProductRows;
+    private List<double[]> borders;
+    private List<double[]> rowsU;
+    private int[] levels;
+
+    /**
+     * Lazy mode: max-heap of the features by their last computed score (ties to the lower index).
+     */
+    private int[] heap;
+    private int heapSize;
+    private double[] bounds;
+
+    /**
+     * Start with no selected features, where G equals E and w equals v.
+     * @param eMatrix E matrix of the features in this range
+     * @param vMatrix v vector of the features in this range
+     */
+    public ResidualScores(DoubleMatrix eMatrix, DoubleMatrix vMatrix)
+    {
+        this(eMatrix, vMatrix, false);
+    }
+
+    /**
+     * Start with no selected features, where G equals E and w equals v.
+     * @param eMatrix E matrix of the features in this range
+     * @param vMatrix v vector of the features in this range
+     * @param lazy true to compute the rows of Z for a feature only when its score is needed
+     */
+    public ResidualScores(DoubleMatrix eMatrix, DoubleMatrix vMatrix, boolean lazy)
+    {
+        columns = eMatrix.columns;
+        responses = eMatrix.rows;
+        matrixG = eMatrix.toArray();
+        vectorW = vMatrix.toArray();
+        vectorV = vMatrix.toArray();
+        this.lazy = lazy;
+
+        if(lazy) {
+            crossProductRows = new ArrayList<>();
+            borders = new ArrayList<>();
+            rowsU = new ArrayList<>();
+            levels = new int[columns];
+            heap = new int[columns];
+            bounds = new double[columns];
+
+            for(int j = 0; j < columns; j++) {
+                bounds[j] = getScore(j);
+
+                if(!Double.isNaN(bounds[j])) {
+                    heap[heapSize++] = j;
+                }
+            }
+
+            for(int i = heapSize / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+    }
+
+    /**
+     * Get the number of features in this range.
+     * @return number of columns
+     */
+    public int getColumns()
+    {
+        return columns;
+    }
+
+    /**
+     * Get the rows of Z.
+     * @return one row per feature in the Cholesky factor
+     */
+    public List<double[]> getRowsZ()
+    {
+        if(lazy) {
+            for(int j = 0; j < columns; j++) {
+                refresh(j);
+            }
+        }
+
+        return rowsZ;
+    }
+
+    /**
+     * Get column j of Z, i.e. L^-1 times the cross-products of feature j with the selected features.
+     * @param j column in this range
+     * @return one value per row of Z
+     */
+    public double[] getColumnZ(int j)
+    {
+        refresh(j);
+        double column[] = new double[rowsZ.size()];
+
+        for(int r = 0; r < column.length; r++) {
+            column[r] = rowsZ.get(r)[j];
+        }
+
+        return column;
+    }
+
+    /**
+     * Get column j of G.
+     * @param j column in this range
+     * @return one value per response column
+     */
+    public double[] getColumnG(int j)
+    {
+        refresh(j);
+        double column[] = new double[responses];
+        System.arraycopy(matrixG, j * responses, column, 0, responses);
+        return column;
+    }
+
+    /**
+     * Add a selected feature that extended the Cholesky factor.
+     * @param crossProducts X^T f of the selected feature f for the features in this range
+     * @param border new row of the Cholesky factor: y followed by the pivot
+     * @param u new row of U = L^-1 CY1^T
+     */
+    public void update(double[] crossProducts, double[] border, double[] u)
+    {
+        if(lazy) {
+            crossProductRows.add(crossProducts);
+            borders.add(border);
+            rowsU.add(u);
+            rowsZ.add(new double[columns]);
+            return;
+        }
+
+        double z[] = CholeskyFactor.eliminate(crossProducts, border, rowsZ);
+
+        for(int j = 0; j < columns; j++) {
+            vectorW[j] -= z[j] * z[j];
+
+            for(int q = 0; q < responses; q++) {
+                matrixG[j * responses + q] -= u[q] * z[j];
+            }
+        }
+
+        rowsZ.add(z);
+    }
+
+    /**
+     * Compute the missing rows of Z for one feature in lazy mode, in the same order of operations
+     * as update, and apply them to G and w.
+     * @param j column in this range
+     */
+    private void refresh(int j)
+    {
+        if(!lazy) {
+            return;
+        }
+
+        for(int r = levels[j]; r < rowsZ.size(); r++) {
+            double border[] = borders.get(r);
+            double u[] = rowsU.get(r);
+            double z = crossProductRows.get(r)[j];
+
+            for(int i = 0; i < r; i++) {
+                z -= border[i] * rowsZ.get(i)[j];
+            }
+
+            z /= border[r];
+
+            // rows of Z are shared by copies, every copy writes the same value
+            rowsZ.get(r)[j] = z;
+            vectorW[j] -= z * z;
+
+            for(int q = 0; q < responses; q++) {
+                matrixG[j * responses + q] -= u[q] * z;
+            }
+        }
+
+        levels[j] = rowsZ.size();
+    }
+
+    /**
+     * Copy the scores so that the copy can be updated without changing this object. The rows of
+     * Z are shared: they are never changed after they are added, in lazy mode their values are
+     * only filled in.
+     * @return copy of this object
+     */
+    public ResidualScores copy()
+    {
+        ResidualScores copy = new ResidualScores(columns, responses);
+        copy.rowsZ = new ArrayList<>(rowsZ);
+        copy.matrixG = matrixG.clone();
+        copy.vectorW = vectorW.clone();
+        copy.vectorV = vectorV;
+        copy.lazy = lazy;
+
+        if(lazy) {
+            copy.crossProductRows = new ArrayList<>(crossProductRows);
+            copy.borders = new ArrayList<>(borders);
+            copy.rowsU = new ArrayList<>(rowsU);
+            copy.levels = levels.clone();
+            copy.heap = heap.clone();
+            copy.heapSize = heapSize;
+            copy.bounds = bounds.clone();
+        }
+
+        return copy;
+    }
+
+    private ResidualScores(int columns, int responses)
+    {
+        this.columns = columns;
+        this.responses = responses;
+    }
+
+    /**
+     * Score of one feature: g / w with g = 1^T (G.*G).
+     * @param j column in this range
+     * @return score of the feature, NaN if it is linearly dependent on the selected features
+     */
+    public double getScore(int j)
+    {
+        refresh(j);
+
+        if(!(vectorW[j] > CholeskyFactor.PIVOT_TOLERANCE * vectorV[j])) {
+            return Double.NaN;
+        }
+
+        double g = 0;
+
+        for(int q = 0; q < responses; q++) {
+            double value = matrixG[j * responses + q];
+            g += value * value;
+        }
+
+        return g / vectorW[j];
+    }
+
+    /**
+     * Scores of all features in this range.
+     * @return row vector with one score per feature
+     */
+    public DoubleMatrix getScores()
+    {
+        DoubleMatrix s = new DoubleMatrix(1, columns);
+
+        for(int j = 0; j < columns; j++) {
+            s.put(j, getScore(j));
+        }
+
+        return s;
+    }
+
+    /**
+     * Find the feature with the highest score (ties to the lower index).
+     * @param excluded features that cannot be chosen, e.g. selected ones
+     * @return column of the best feature in this range, or -1 if no feature has a valid score
+     */
+    public int getBest(boolean[] excluded)
+    {
+        if(lazy) {
+            return getBestLazy(excluded);
+        }
+
+        int best = -1;
+        double value = Double.NEGATIVE_INFINITY;
+
+        for(int j = 0; j < columns; j++) {
+            if(excluded[j]) {
+                continue;
+            }
+
+            double score = getScore(j);
+
+            if(!Double.isNaN(score) && (best < 0 || score > value)) {
+                value = score;
+                best = j;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Refresh the top of the heap until a refreshed feature stays on top. Features that are
+     * excluded or became linearly dependent (w only shrinks) are removed from the heap.
+     */
+    private int getBestLazy(boolean[] excluded)
+    {
+        while(heapSize > 0) {
+            int j = heap[0];
+
+            if(excluded[j]) {
+                removeTop();
+            } else if(levels[j] < rowsZ.size()) {
+                double score = getScore(j);
+
+                if(Double.isNaN(score)) {
+                    removeTop();
+                } else {
+                    bounds[j] = score;
+                    siftDown(0);
+                }
+            } else {
+                return j;
+            }
+        }
+
+        return -1;
+    }
+
+    private void removeTop()
+    {
+        heap[0] = heap[--heapSize];
+        siftDown(0);
+    }
+
+    private void siftDown(int i)
+    {
+        while(true) {
+            int largest = i;
+
+            for(int child = 2 * i + 1; child <= 2 * i + 2 && child < heapSize; child++) {
+                if(isAbove(heap[child], heap[largest])) {
+                    largest = child;
+                }
+            }
+
+            if(largest == i) {
+                return;
+            }
+
+            int swap = heap[i];
+            heap[i] = heap[largest];
+            heap[largest] = swap;
+            i = largest;
+        }
+    }
+
+    private boolean isAbove(int a, int b)
+    {
+        return bounds[a] > bounds[b] || (bounds[a] == bounds[b] && a < b);
+    }
+}
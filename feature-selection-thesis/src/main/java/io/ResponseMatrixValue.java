@@ -1,7 +1,10 @@
 package io;
 
+import org.jblas.DoubleMatrix;
+
 /**
- * Response matrix which corresponds to Y matrix in step 1
+ * Response matrix which corresponds to Y matrix in step 1. Y has one column per class, the values
+ * of a column only depend on whether a data point belongs to the class of the column.
  */
 public class ResponseMatrixValue
 {
@@ -11,17 +14,44 @@ public class ResponseMatrixValue
 
     /**
      * Response matrix value for certain class is proportion of data points belong to certain class compared to
-     * total number of instances.
+     * total number of instances, as formula (4) in the paper.
      * @param numberOfClassOccurence number of data points that belong to certain class
      * @param numberOfInstances number of instances in the whole data set
      */
     public ResponseMatrixValue(int numberOfClassOccurence, int numberOfInstances){
-        classValue = - Math.sqrt(numberOfClassOccurence) / numberOfInstances;
-        otherClassesValue = 1.0 / Math.sqrt(numberOfClassOccurence) + classValue;
+        otherClassesValue = - Math.sqrt(numberOfClassOccurence) / numberOfInstances;
+        classValue = 1.0 / Math.sqrt(numberOfClassOccurence) + otherClassesValue;
+    }
+
+    /**
+     * Create the response table: row r holds the row of Y of the data points in class r, i.e. the
+     * class value in column r and the other classes value of each other class in its column.
+     * @param classCounts number of data points per class
+     * @return c x c response table
+     */
+    public static DoubleMatrix getResponseTable(int[] classCounts)
+    {
+        int numberOfInstances = 0;
+
+        for(int count : classCounts) {
+            numberOfInstances += count;
+        }
+
+        DoubleMatrix responses = new DoubleMatrix(classCounts.length, classCounts.length);
+
+        for(int k = 0; k < classCounts.length; k++) {
+            ResponseMatrixValue value = new ResponseMatrixValue(classCounts[k], numberOfInstances);
+
+            for(int r = 0; r < classCounts.length; r++) {
+                responses.put(r, k, r == k ? value.getClassValue() : value.getOtherClassesValue());
+            }
+        }
+
+        return responses;
     }
 
     /**
-     * Get the value of response matrix (Y) for this class.
+     * Get the value of response matrix (Y) in the column of this class for data points of this class.
      * @return value of response matrix (Y) for this class
      */
     public double getClassValue() {
@@ -37,7 +67,7 @@ public class ResponseMatrixValue
     }
 
     /**
-     * Get the value of response matrix (Y) for other classes relative to this class.
+     * Get the value of response matrix (Y) in the column of this class for data points of other classes.
      * @return value of response matrix (Y) for other classes relative to this class
      */
     public double getOtherClassesValue() {
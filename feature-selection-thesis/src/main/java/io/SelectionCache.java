@@ -0,0 +1,191 @@
+package io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Results of earlier selections on a local or distributed file system (spark.fs.cache.path).
+ * Greedy selection is nested: the first k features of a longer run are the selection for k. A
+ * result is stored under a key made of the fingerprint of the data and the options that change
+ * the selection, so a run with k up to a stored length takes its features from the cache and a
+ * longer run continues from them.
+ *
+ * Every key is one text file: "complete" if the selection ended because no further feature had a
+ * valid score (it then holds the result for every k), "prefix" otherwise, followed by one line
+ * per selected feature with its index (after pruning) and its score when it was chosen.
+ */
+public class SelectionCache
+{
+    private static final String COMPLETE = "complete";
+    private static final String PREFIX = "prefix";
+
+    private Path path;
+    private Configuration hadoopConf;
+    private List<Integer> selected = new ArrayList<>();
+    private List<Double> scores = new ArrayList<>();
+    private boolean complete = false;
+
+    /**
+     * Open the cached result of a selection.
+     * @param config selector configuration, the cache is disabled without spark.fs.cache.path
+     * @param hadoopConf Hadoop configuration for the file system
+     * @param profile profile of the input data
+     * @param labelClasses class of each label
+     * @return cached result, empty if there is none
+     */
+    public static SelectionCache open(SelectorConfig config, Configuration hadoopConf, DatasetProfile profile, int[] labelClasses)
+    {
+        SelectionCache cache = new SelectionCache();
+        cache.hadoopConf = hadoopConf;
+
+        if(config.getCachePath() == null) {
+            return cache;
+        }
+
+        cache.path = new Path(config.getCachePath(), getKey(config, profile, labelClasses));
+
+        try {
+            cache.load();
+        } catch(IOException | RuntimeException e) {
+            System.out.println("Cannot read cached selection " + cache.path + ": " + e);
+            cache.selected.clear();
+            cache.scores.clear();
+            cache.complete = false;
+        }
+
+        return cache;
+    }
+
+    /**
+     * Build the key of a selection from the data and the options that change the result.
+     */
+    private static String getKey(SelectorConfig config, DatasetProfile profile, int[] labelClasses)
+    {
+        return profile.getFingerprint() + getOptions(config, labelClasses, false);
+    }
+
+    /**
+     * Build the part of the key that stands for the options that change the result. The layout,
+     * storage and Gram matrix options only change how the same selection is computed.
+     * @param config selector configuration
+     * @param labelClasses class of each label
+     * @param strictGreedy true for the options of a strict greedy selection, whatever the batch size
+     * @return options, starting with "-"
+     */
+    public static String getOptions(SelectorConfig config, int[] labelClasses, boolean strictGreedy)
+    {
+        StringBuilder key = new StringBuilder("-c");
+
+        for(int i = 0; i < labelClasses.length; i++) {
+            key.append(i > 0 ? "_" : "").append(labelClasses[i]);
+        }
+
+        key.append(config.prune() ? "-p" + config.getMinSupport() : "-all");
+
+        if(config.isLazy()) {
+            key.append("-lazy");
+        }
+
+        // batches with correction give the strict greedy result
+        if(!strictGreedy && config.getBatchSize() > 1 && !config.useBatchCorrection()) {
+            key.append("-b").append(config.getBatchSize());
+        }
+
+        return key.toString();
+    }
+
+    private void load() throws IOException
+    {
+        FileSystem fs = path.getFileSystem(hadoopConf);
+
+        if(!fs.exists(path)) {
+            return;
+        }
+
+        try(BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(path), StandardCharsets.US_ASCII))) {
+            complete = COMPLETE.equals(in.readLine());
+            String line;
+
+            while((line = in.readLine()) != null) {
+                String fields[] = line.split(" ");
+                selected.add(Integer.parseInt(fields[0]));
+                scores.add(Double.parseDouble(fields[1]));
+            }
+        }
+
+        System.out.println("Cached selection with " + selected.size() + " features" + (complete ? " (complete)" : ""));
+    }
+
+    /**
+     * Check whether the cache holds the selection of a number of features.
+     * @param loopNumber number of features to be selected
+     * @return true if the cached selection is at least that long or complete
+     */
+    public boolean covers(int loopNumber)
+    {
+        return path != null && (complete || selected.size() >= loopNumber) && !selected.isEmpty();
+    }
+
+    /**
+     * Get the cached features.
+     * @return selected features in the order of selection
+     */
+    public List<Integer> getSelected() {
+        return selected;
+    }
+
+    /**
+     * Get the scores of the cached features.
+     * @return score of each feature when it was chosen
+     */
+    public List<Double> getScores() {
+        return scores;
+    }
+
+    /**
+     * Store a selection if it is longer than the cached one. A failed write is reported and the
+     * result is still used.
+     * @param newSelected selected features in the order of selection
+     * @param newScores score of each feature when it was chosen
+     * @param newComplete whether the selection ended before the requested number of features
+     */
+    public void store(List<Integer> newSelected, List<Double> newScores, boolean newComplete)
+    {
+        if(path == null || complete || newSelected.size() <= selected.size() && !newComplete) {
+            return;
+        }
+
+        Path temp = new Path(path.getParent(), path.getName() + ".tmp");
+
+        try {
+            FileSystem fs = path.getFileSystem(hadoopConf);
+            fs.mkdirs(path.getParent());
+
+            try(Writer out = new BufferedWriter(new OutputStreamWriter(fs.create(temp, true), StandardCharsets.US_ASCII))) {
+                out.write(newComplete ? COMPLETE : PREFIX);
+                out.write('\n');
+
+                for(int i = 0; i < newSelected.size(); i++) {
+                    out.write(newSelected.get(i) + " " + newScores.get(i) + "\n");
+                }
+            }
+
+            fs.delete(path, false);
+            fs.rename(temp, path);
+        } catch(IOException e) {
+            System.out.println("Cannot write cached selection " + path + ": " + e);
+            return;
+        }
+
+        selected = new ArrayList<>(newSelected);
+        scores = new ArrayList<>(newScores);
+        complete = newComplete;
+        System.out.println("Selection of " + selected.size() + " features cached in " + path);
+    }
+}
@@ -0,0 +1,338 @@
+package io;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * State of a greedy selection that is saved periodically to a local or distributed file system
+ * (spark.fs.checkpoint.path), so that a restarted job continues from the last checkpoint. The state
+ * is the selected features in order and the cross-products X^T f of the features that were added
+ * (step 8); the Cholesky factor of A and the scores are rebuilt from them on the driver without
+ * Spark jobs. The feature shard layout only needs the selected features, their columns are read
+ * from the shards again.
+ *
+ * Every selection has its own subdirectory of the configured directory, named by the fingerprint
+ * of the data, the options that change the selection (see SelectionCache), the layout and the
+ * number of features to be selected, so runs that share the directory do not continue or remove
+ * each other's state. "state" holds the small part and is replaced by writing "state.tmp" and
+ * renaming it; if a save was interrupted after the old state was removed, the complete temporary
+ * file is read instead. The cross-products are appended in segments, so every checkpoint only
+ * writes the new ones.
+ */
+public class SelectionCheckpoint
+{
+    private static final String STATE_FILE = "state";
+    private static final String TEMP_FILE = "state.tmp";
+    private static final String SEGMENT_FILE = "cross-products-";
+
+    private Path directory;
+    private Configuration hadoopConf;
+    private int iterationInterval;
+    private long timeInterval;
+
+    private State state;
+    private List<double[]> crossProducts = new ArrayList<>();
+    private int savedSize;
+    private long savedTime = System.currentTimeMillis();
+    private SelectionListener listener;
+    private long startTime;
+
+    /**
+     * Saved part of the selection.
+     */
+    private static class State implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private String fingerprint;
+        private String options;
+        private String layout;
+        private int features;
+        private int rows;
+        private List<Integer> selected = new ArrayList<>();
+        private List<Double> scores = new ArrayList<>();
+        private double objective;
+        private int rounds;
+
+        /**
+         * Number of segments and of cross-products in them.
+         */
+        private int segments;
+        private int savedCrossProducts;
+    }
+
+    /**
+     * Open the checkpoint of a selection. If the configured directory holds the state of a
+     * selection of the same data with the same options, layout and data dimensions, the
+     * selection continues from it.
+     * @param config selector configuration
+     * @param hadoopConf Hadoop configuration for the file system
+     * @param fingerprint fingerprint of the data, see DatasetProfile.getFingerprint
+     * @param options options that change the selection, see SelectionCache.getOptions
+     * @param layout selection loop, e.g. "greedy" or "shards"
+     * @param loopNumber number of features to be selected
+     * @param features number of features
+     * @param rows number of data points
+     * @return saved or empty state
+     */
+    public static SelectionCheckpoint open(SelectorConfig config, Configuration hadoopConf, String fingerprint, String options,
+                                           String layout, int loopNumber, int features, int rows)
+    {
+        SelectionCheckpoint checkpoint = new SelectionCheckpoint();
+        checkpoint.hadoopConf = hadoopConf;
+
+        if(config.getCheckpointPath() != null) {
+            checkpoint.directory = new Path(config.getCheckpointPath(), fingerprint + options + "-" + layout + "-k" + loopNumber);
+        }
+
+        checkpoint.iterationInterval = config.getCheckpointIterations();
+        checkpoint.timeInterval = config.getCheckpointSeconds() * 1000L;
+
+        if(checkpoint.directory != null) {
+            try {
+                checkpoint.load();
+            } catch(IOException | ClassNotFoundException e) {
+                System.out.println("Cannot read checkpoint " + checkpoint.directory + ": " + e);
+                checkpoint.state = null;
+            }
+        }
+
+        if(checkpoint.state != null && fingerprint.equals(checkpoint.state.fingerprint) && options.equals(checkpoint.state.options)
+                && layout.equals(checkpoint.state.layout) && checkpoint.state.features == features && checkpoint.state.rows == rows) {
+            System.out.println("Resume from checkpoint with " + checkpoint.state.selected.size() + " selected features");
+        } else {
+            checkpoint.state = new State();
+            checkpoint.state.fingerprint = fingerprint;
+            checkpoint.state.options = options;
+            checkpoint.state.layout = layout;
+            checkpoint.state.features = features;
+            checkpoint.state.rows = rows;
+            checkpoint.crossProducts.clear();
+        }
+
+        checkpoint.savedSize = checkpoint.state.selected.size();
+
+        return checkpoint;
+    }
+
+    private void load() throws IOException, ClassNotFoundException
+    {
+        Path statePath = new Path(directory, STATE_FILE);
+        FileSystem fs = statePath.getFileSystem(hadoopConf);
+
+        if(!fs.exists(statePath)) {
+            // the temporary file is complete if the old state was already removed
+            statePath = new Path(directory, TEMP_FILE);
+
+            if(!fs.exists(statePath)) {
+                return;
+            }
+        }
+
+        try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(fs.open(statePath)))) {
+            state = (State) in.readObject();
+        }
+
+        for(int s = 0; s < state.segments; s++) {
+            try(ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(fs.open(new Path(directory, SEGMENT_FILE + s))))) {
+                for(double[] vector : (double[][]) in.readObject()) {
+                    crossProducts.add(vector);
+                }
+            }
+        }
+
+        // a segment may hold more than the state refers to if saving was interrupted
+        crossProducts = new ArrayList<>(crossProducts.subList(0, state.savedCrossProducts));
+    }
+
+    /**
+     * Get the selected features, in the order of selection.
+     * @return indexes of selected features
+     */
+    public List<Integer> getSelected() {
+        return state.selected;
+    }
+
+    /**
+     * Get the scores of the selected features when they were chosen.
+     * @return one score per selected feature, NaN if it had no valid score
+     */
+    public List<Double> getScores() {
+        return state.scores;
+    }
+
+    /**
+     * Get the cross-products of the added features, in the order of selection.
+     * @return X^T f of each added feature
+     */
+    public List<double[]> getCrossProducts() {
+        return crossProducts;
+    }
+
+    public double getObjective() {
+        return state.objective;
+    }
+
+    public int getRounds() {
+        return state.rounds;
+    }
+
+    /**
+     * Set the receiver of the features that are selected from now on.
+     * @param listener selection listener, it gets the indexes as they are recorded
+     * @param startTime start of the run in milliseconds
+     */
+    public void setListener(SelectionListener listener, long startTime)
+    {
+        this.listener = listener;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Record a selected feature.
+     * @param index index of the feature
+     * @param score score of the feature when it was chosen
+     */
+    public void select(int index, double score)
+    {
+        state.selected.add(index);
+        state.scores.add(score);
+
+        if(listener != null) {
+            listener.featureSelected(state.selected.size(), index, score, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Continue an empty selection from features selected before, e.g. by a cached run with the
+     * same data and options. They have no cross-products, the selection has to compute them.
+     * @param selected selected features in the order of selection
+     * @param scores score of each feature when it was chosen
+     */
+    public void seed(List<Integer> selected, List<Double> scores)
+    {
+        if(!state.selected.isEmpty()) {
+            return;
+        }
+
+        state.selected.addAll(selected);
+        state.scores.addAll(scores);
+        state.objective = 0.0;
+
+        for(double score : scores) {
+            state.objective += Double.isNaN(score) ? 0.0 : score;
+        }
+
+        savedSize = state.selected.size();
+        System.out.println("Continue from " + selected.size() + " cached selected features");
+    }
+
+    /**
+     * Record the cross-products of the next added feature.
+     * @param vector X^T f of the feature
+     */
+    public void addCrossProducts(double[] vector)
+    {
+        crossProducts.add(vector);
+    }
+
+    /**
+     * Record the objective and number of distributed rounds so far.
+     * @param objective sum of the scores of the selected features
+     * @param rounds number of rounds
+     */
+    public void setProgress(double objective, int rounds)
+    {
+        state.objective = objective;
+        state.rounds = rounds;
+    }
+
+    /**
+     * Save the state if the configured number of iterations or time has passed since the last
+     * checkpoint. A failed save is reported and the selection goes on.
+     */
+    public void checkpointIfDue()
+    {
+        if(directory == null) {
+            return;
+        }
+
+        boolean dueByIterations = iterationInterval > 0 && state.selected.size() - savedSize >= iterationInterval;
+        boolean dueByTime = timeInterval > 0 && System.currentTimeMillis() - savedTime >= timeInterval;
+
+        if(dueByIterations || dueByTime) {
+            try {
+                save();
+            } catch(IOException e) {
+                System.out.println("Cannot write checkpoint " + directory + ": " + e);
+            }
+        }
+    }
+
+    private void save() throws IOException
+    {
+        Path stateTemp = new Path(directory, TEMP_FILE);
+        Path statePath = new Path(directory, STATE_FILE);
+        FileSystem fs = statePath.getFileSystem(hadoopConf);
+        fs.mkdirs(directory);
+
+        if(crossProducts.size() > state.savedCrossProducts) {
+            List<double[]> segment = crossProducts.subList(state.savedCrossProducts, crossProducts.size());
+
+            try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                    fs.create(new Path(directory, SEGMENT_FILE + state.segments), true)))) {
+                out.writeObject(segment.toArray(new double[0][]));
+            }
+
+            state.segments++;
+            state.savedCrossProducts = crossProducts.size();
+        }
+
+        try(ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fs.create(stateTemp, true)))) {
+            out.writeObject(state);
+        }
+
+        fs.delete(statePath, false);
+
+        if(!fs.rename(stateTemp, statePath)) {
+            throw new IOException("Cannot rename " + stateTemp + " to " + statePath);
+        }
+
+        savedSize = state.selected.size();
+        savedTime = System.currentTimeMillis();
+        System.out.println("Checkpoint with " + savedSize + " selected features written to " + directory);
+    }
+
+    /**
+     * Remove the files of the checkpoint after the selection finished, and its subdirectory if
+     * nothing else is in it.
+     */
+    public void finish()
+    {
+        if(directory == null) {
+            return;
+        }
+
+        try {
+            FileSystem fs = directory.getFileSystem(hadoopConf);
+            fs.delete(new Path(directory, STATE_FILE), false);
+            fs.delete(new Path(directory, TEMP_FILE), false);
+
+            // segments up to one that was written without the state that refers to it
+            for(int s = 0; fs.exists(new Path(directory, SEGMENT_FILE + s)); s++) {
+                fs.delete(new Path(directory, SEGMENT_FILE + s), false);
+            }
+
+            if(fs.exists(directory) && fs.listStatus(directory).length == 0) {
+                fs.delete(directory, false);
+            }
+        } catch(IOException e) {
+            System.out.println("Cannot remove checkpoint " + directory + ": " + e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends every selected feature to a local file as soon as it is chosen, one line
+ * "rank feature score elapsed" per feature. The file is flushed after each line, so it can be
+ * followed (e.g. with 'tail -f') while the selection runs.
+ */
+public class SelectionFileSink implements SelectionListener
+{
+    private String fileName;
+    private Writer out;
+
+    /**
+     * Open the file for appending.
+     * @param fileName local file name
+     * @throws IOException if the file cannot be opened
+     */
+    public SelectionFileSink(String fileName) throws IOException
+    {
+        this.fileName = fileName;
+        this.out = new OutputStreamWriter(new FileOutputStream(fileName, true), StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public void featureSelected(int rank, int featureIndex, double score, long elapsed)
+    {
+        if(out == null) {
+            return;
+        }
+
+        try {
+            out.write(rank + " " + featureIndex + " " + score + " " + elapsed + "\n");
+            out.flush();
+        } catch(IOException e) {
+            // the selection goes on without the file
+            System.out.println("Cannot write selected features to " + fileName + ": " + e);
+            close();
+        }
+    }
+
+    @Override
+    public void selectionFinished(int count)
+    {
+        close();
+    }
+
+    private void close()
+    {
+        try {
+            if(out != null) {
+                out.close();
+            }
+        } catch(IOException e) {
+            System.out.println("Cannot close " + fileName + ": " + e);
+        }
+
+        out = null;
+    }
+}
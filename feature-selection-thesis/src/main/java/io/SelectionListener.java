@@ -0,0 +1,26 @@
+package io;
+
+/**
+ * Receives the selected features one by one, in the order in which they are chosen, so that the
+ * ranking can be used while the selection continues. Listeners are added to the input reader
+ * (FSInputReader.addSelectionListener) or configured (spark.fs.listener.file).
+ */
+public interface SelectionListener
+{
+    /**
+     * Called for every selected feature, also for the ones taken from a checkpoint or the cache.
+     * @param rank position of the feature in the selection, starting at 1
+     * @param featureIndex index of the feature in the input
+     * @param score score of the feature when it was chosen, NaN if it had no valid score
+     * @param elapsed milliseconds since the start of the run
+     */
+    void featureSelected(int rank, int featureIndex, double score, long elapsed);
+
+    /**
+     * Called once when the selection is done.
+     * @param count number of selected features
+     */
+    default void selectionFinished(int count)
+    {
+    }
+}
@@ -0,0 +1,372 @@
+package io;
+
+import org.apache.spark.JavaSparkListener;
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.broadcast.Broadcast;
+import org.apache.spark.executor.TaskMetrics;
+import org.apache.spark.scheduler.SparkListenerJobEnd;
+import org.apache.spark.scheduler.SparkListenerJobStart;
+import org.apache.spark.scheduler.SparkListenerStageSubmitted;
+import org.apache.spark.scheduler.SparkListenerTaskEnd;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Records the metrics of the stages of a run (see StageMetrics) and gives them to the metrics
+ * sinks. The driver marks the stages with begin and end; the Spark jobs started in between are
+ * in a job group of the stage, so that the events of the Spark listener, which arrive later on
+ * another thread, are added to the right stage. When a stage ends, the ids of its jobs are taken
+ * from the status tracker.
+ *
+ * A stage is given to the sinks when it ended, all of its jobs are done and the listener has seen
+ * a job of a later stage. The listener bus delivers the events in order, so by then no event of
+ * the stage can still be queued, even for a job that the status tracker (which is fed by the same
+ * bus) did not know yet. When the run is done, a small job marks the end of the events.
+ *
+ * Without a sink nothing is recorded: the listener is registered with the first sink, and until
+ * then the stages only keep the start time of the run, without job groups, size of broadcasts
+ * or the job at the end.
+ */
+public class SelectionMetrics extends JavaSparkListener
+{
+    private static final String GROUP_PREFIX = "spark.fs.metrics.";
+    private static final String GROUP_PROPERTY = "spark.jobGroup.id";
+
+    /**
+     * Time to wait for the events of the last jobs when the run is done.
+     */
+    private static final long CLOSE_TIMEOUT = 10000;
+
+    private JavaSparkContext sc;
+    private List<MetricsSink> sinks = new ArrayList<>();
+    private int nextId = 0;
+    private StageMetrics current;
+    private int currentId;
+
+    /**
+     * Start of the first stage, i.e. of the run, in milliseconds.
+     */
+    private long startTime = -1;
+
+    /**
+     * Highest stage id of a job that the listener has seen, every event of the stages before it
+     * has arrived.
+     */
+    private int lastSeenId = -1;
+
+    /**
+     * Stages that are not given to the sinks yet, by id, and the stage of every Spark job and Spark stage.
+     */
+    private Map<Integer, StageMetrics> pending = new LinkedHashMap<>();
+    private Map<Integer, StageMetrics> jobStages = new HashMap<>();
+    private Map<Integer, StageMetrics> sparkStages = new HashMap<>();
+
+    /**
+     * Create the recorder, it is registered as Spark listener with the first sink.
+     * @param sc Spark context
+     */
+    public SelectionMetrics(JavaSparkContext sc)
+    {
+        this.sc = sc;
+    }
+
+    /**
+     * Add a receiver of the stage metrics, it gets the stages that begin from now on.
+     * @param sink metrics sink
+     */
+    public synchronized void addSink(MetricsSink sink)
+    {
+        if(sinks.isEmpty()) {
+            sc.sc().addSparkListener(this);
+        }
+
+        sinks.add(sink);
+    }
+
+    /**
+     * Start a stage, the current stage ends.
+     * @param name stage name
+     */
+    public void begin(String name)
+    {
+        begin(name, -1);
+    }
+
+    /**
+     * Start a stage of the greedy loop, the current stage ends.
+     * @param name stage name
+     * @param iteration number of the iteration, starting at 1
+     */
+    public synchronized void begin(String name, int iteration)
+    {
+        end();
+
+        if(sinks.isEmpty()) {
+            if(startTime < 0) {
+                startTime = System.currentTimeMillis();
+            }
+
+            return;
+        }
+
+        currentId = nextId++;
+        current = new StageMetrics(name, iteration);
+
+        if(startTime < 0) {
+            startTime = current.getStartTime();
+        }
+
+        pending.put(currentId, current);
+        sc.setJobGroup(GROUP_PREFIX + currentId, name);
+    }
+
+    /**
+     * Get the start of the run, i.e. of its first stage.
+     * @return time in milliseconds, the current time if no stage started yet
+     */
+    public synchronized long getStartTime() {
+        return startTime < 0 ? System.currentTimeMillis() : startTime;
+    }
+
+    /**
+     * End the current stage.
+     */
+    public synchronized void end()
+    {
+        if(current == null) {
+            return;
+        }
+
+        current.end(sc.statusTracker().getJobIdsForGroup(GROUP_PREFIX + currentId));
+        current = null;
+        sc.clearJobGroup();
+        publish();
+    }
+
+    /**
+     * Run linear algebra on the driver and add its time to the current stage.
+     * @param work computation on the driver
+     * @return result of the computation
+     */
+    public <T> T onDriver(Supplier<T> work)
+    {
+        long start = System.nanoTime();
+        T result = work.get();
+        addDriverTime(System.nanoTime() - start);
+
+        return result;
+    }
+
+    /**
+     * Run linear algebra on the driver and add its time to the current stage.
+     * @param work computation on the driver
+     */
+    public void onDriver(Runnable work)
+    {
+        long start = System.nanoTime();
+        work.run();
+        addDriverTime(System.nanoTime() - start);
+    }
+
+    private synchronized void addDriverTime(long nanos)
+    {
+        if(current != null) {
+            current.addDriverTime(nanos);
+        }
+    }
+
+    /**
+     * Broadcast a value and add its serialized size to the current stage.
+     * @param value value to be broadcast
+     * @return broadcast variable
+     */
+    public <T> Broadcast<T> broadcast(T value)
+    {
+        boolean recording;
+
+        synchronized(this) {
+            recording = current != null;
+        }
+
+        if(recording) {
+            long bytes = getSerializedSize(value);
+
+            synchronized(this) {
+                if(current != null) {
+                    current.addBroadcast(bytes);
+                }
+            }
+        }
+
+        return sc.broadcast(value);
+    }
+
+    private static long getSerializedSize(Object value)
+    {
+        long counter[] = new long[1];
+
+        try(ObjectOutputStream out = new ObjectOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                counter[0]++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                counter[0] += len;
+            }
+        })) {
+            out.writeObject(value);
+        } catch(IOException e) {
+            return -1;
+        }
+
+        return counter[0];
+    }
+
+    @Override
+    public synchronized void onJobStart(SparkListenerJobStart jobStart)
+    {
+        int id = getStageId(jobStart.properties());
+        StageMetrics stage = pending.get(id);
+
+        if(stage != null) {
+            stage.startJob(jobStart.jobId());
+            jobStages.put(jobStart.jobId(), stage);
+        }
+
+        if(id > lastSeenId) {
+            lastSeenId = id;
+            publish();
+            notifyAll();
+        }
+    }
+
+    @Override
+    public synchronized void onStageSubmitted(SparkListenerStageSubmitted stageSubmitted)
+    {
+        StageMetrics stage = pending.get(getStageId(stageSubmitted.properties()));
+
+        if(stage != null) {
+            stage.addSparkStage(stageSubmitted.stageInfo().stageId());
+            sparkStages.put(stageSubmitted.stageInfo().stageId(), stage);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskEnd(SparkListenerTaskEnd taskEnd)
+    {
+        StageMetrics stage = sparkStages.get(taskEnd.stageId());
+        TaskMetrics metrics = taskEnd.taskMetrics();
+
+        if(stage != null && metrics != null) {
+            stage.addTask(metrics.executorRunTime(),
+                    metrics.shuffleReadMetrics().isDefined() ? metrics.shuffleReadMetrics().get().totalBytesRead() : 0,
+                    metrics.shuffleWriteMetrics().isDefined() ? metrics.shuffleWriteMetrics().get().shuffleBytesWritten() : 0,
+                    metrics.resultSize());
+        }
+    }
+
+    @Override
+    public synchronized void onJobEnd(SparkListenerJobEnd jobEnd)
+    {
+        StageMetrics stage = jobStages.remove(jobEnd.jobId());
+
+        if(stage != null) {
+            stage.endJob(jobEnd.jobId());
+            publish();
+            notifyAll();
+        }
+    }
+
+    /**
+     * Get the stage of a job from its job group.
+     * @return stage id, -1 for a job outside of the stages
+     */
+    private static int getStageId(Properties properties)
+    {
+        String group = properties == null ? null : properties.getProperty(GROUP_PROPERTY);
+        return group != null && group.startsWith(GROUP_PREFIX) ? Integer.parseInt(group.substring(GROUP_PREFIX.length())) : -1;
+    }
+
+    /**
+     * Give the finished stages to the sinks, in the order in which they started.
+     */
+    private void publish()
+    {
+        Iterator<Map.Entry<Integer, StageMetrics>> iterator = pending.entrySet().iterator();
+
+        while(iterator.hasNext()) {
+            Map.Entry<Integer, StageMetrics> entry = iterator.next();
+            StageMetrics stage = entry.getValue();
+
+            if(entry.getKey() >= lastSeenId || !stage.isDone()) {
+                break;
+            }
+
+            iterator.remove();
+            sparkStages.values().removeIf(s -> s == stage);
+
+            for(MetricsSink sink : sinks) {
+                sink.record(stage);
+            }
+        }
+    }
+
+    /**
+     * End the current stage, run a small job after it and wait until the listener has seen it,
+     * so that all events of the stages have arrived, and close the sinks. Stages whose events did
+     * not arrive in time are given to the sinks as they are. Without sinks no job is run.
+     */
+    public void close()
+    {
+        int markerId;
+
+        synchronized(this) {
+            end();
+
+            if(sinks.isEmpty()) {
+                return;
+            }
+
+            markerId = nextId++;
+        }
+
+        sc.setJobGroup(GROUP_PREFIX + markerId, "end of metrics");
+        sc.parallelize(Collections.singletonList(0), 1).count();
+        sc.clearJobGroup();
+
+        synchronized(this) {
+            closeSinks(markerId);
+        }
+    }
+
+    private void closeSinks(int markerId)
+    {
+        long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+
+        try {
+            while(!(lastSeenId >= markerId && pending.isEmpty()) && System.currentTimeMillis() < deadline) {
+                wait(100);
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for(StageMetrics stage : pending.values()) {
+            for(MetricsSink sink : sinks) {
+                sink.record(stage);
+            }
+        }
+
+        pending.clear();
+
+        for(MetricsSink sink : sinks) {
+            sink.close();
+        }
+    }
+}
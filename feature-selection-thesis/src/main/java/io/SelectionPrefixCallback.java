@@ -0,0 +1,59 @@
+package io;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Hands the first m selected features to a callback as soon as they are chosen, e.g. to start
+ * training a classifier on them while the selection continues. The callback runs once on its own
+ * thread; if the selection ends with fewer features, it gets all of them.
+ */
+public class SelectionPrefixCallback implements SelectionListener
+{
+    private int[] prefix;
+    private int size = 0;
+    private Consumer<int[]> callback;
+
+    /**
+     * Create the listener.
+     * @param m number of features the callback waits for
+     * @param callback receives the indexes of the first m features in the input, in the order of selection
+     */
+    public SelectionPrefixCallback(int m, Consumer<int[]> callback)
+    {
+        this.prefix = new int[m];
+        this.callback = callback;
+    }
+
+    @Override
+    public void featureSelected(int rank, int featureIndex, double score, long elapsed)
+    {
+        if(callback == null || rank > prefix.length) {
+            return;
+        }
+
+        prefix[rank - 1] = featureIndex;
+        size = Math.max(size, rank);
+
+        if(size == prefix.length) {
+            start();
+        }
+    }
+
+    @Override
+    public void selectionFinished(int count)
+    {
+        if(callback != null) {
+            start();
+        }
+    }
+
+    private void start()
+    {
+        int features[] = Arrays.copyOf(prefix, size);
+        Consumer<int[]> target = callback;
+        callback = null;
+
+        new Thread(() -> target.accept(features), "selection-prefix-callback").start();
+    }
+}
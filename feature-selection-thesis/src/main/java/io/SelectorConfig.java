@@ -0,0 +1,317 @@
+package io;
+
+import org.apache.spark.SparkConf;
+import org.apache.spark.storage.StorageLevel;
+
+import java.io.Serializable;
+
+/**
+ * Tuning options of the feature selector. All options are read from the Spark configuration,
+ * so they can be given as system properties, e.g. '-Dspark.fs.sparse.maxDensity=0.05'.
+ */
+public class SelectorConfig implements Serializable
+{
+    /**
+     * Partitions with a lower ratio of non-zero values than this are stored as sparse matrices.
+     */
+    private double sparseMaxDensity;
+
+    /**
+     * Whether partitions with only 0/1 values are stored as bitsets.
+     */
+    private boolean bitset;
+
+    /**
+     * Whether step 10 is derived on the driver from the cross-products of step 8 instead of
+     * being recomputed from all partitions in every iteration.
+     */
+    private boolean incremental;
+
+    /**
+     * Whether the incremental greedy loop only refreshes the scores of the best candidates.
+     */
+    private boolean lazy;
+
+    /**
+     * Driver memory that the Gram matrix X^T X may take to run the whole selection on the driver.
+     */
+    private long gramMaxBytes;
+
+    /**
+     * Whether constant and duplicate features are dropped before the selection, and the minimum
+     * number of non-zero values of a kept feature.
+     */
+    private boolean prune;
+    private int minSupport;
+
+    /**
+     * Number of features selected per distributed round, whether they are corrected on the
+     * driver and whether the result is compared with strict greedy.
+     */
+    private int batchSize;
+    private boolean batchCorrection;
+    private boolean batchReport;
+
+    /**
+     * Partitioning of the data in the greedy loop: "rows", "features" or "auto".
+     */
+    private String layout;
+
+    /**
+     * In "auto" layout, data with at least this many times more features than data points is
+     * partitioned by features.
+     */
+    private double wideRatio;
+
+    /**
+     * Number of feature shards (0 uses the number of partitions).
+     */
+    private int numberOfShards;
+
+    /**
+     * Depth of the aggregation trees that sum the statistics of all partitions.
+     */
+    private int treeDepth;
+
+    /**
+     * Whether the part files of the output are merged into one file.
+     */
+    private boolean mergeOutput;
+
+    /**
+     * Directory of the selection checkpoint (null disables checkpoints), and the number of
+     * selected features and seconds after which it is written again.
+     */
+    private String checkpointPath;
+    private int checkpointIterations;
+    private int checkpointSeconds;
+
+    /**
+     * Directory of the cached selection results (null disables the cache).
+     */
+    private String cachePath;
+
+    /**
+     * Local file to which the selected features are appended while they are chosen (null disables it).
+     */
+    private String listenerFile;
+
+    /**
+     * Storage level of the feature blocks, e.g. MEMORY_ONLY_SER to keep them serialized.
+     */
+    private StorageLevel storageLevel;
+
+    /**
+     * Local file to which the metrics of every stage are appended as JSON lines (null disables it).
+     */
+    private String metricsFile;
+
+    /**
+     * Read the selector options from the Spark configuration.
+     * @param conf Spark configuration
+     */
+    public SelectorConfig(SparkConf conf)
+    {
+        sparseMaxDensity = conf.getDouble("spark.fs.sparse.maxDensity", 0.1);
+        bitset = conf.getBoolean("spark.fs.bitset", true);
+        incremental = conf.getBoolean("spark.fs.incremental", true);
+        lazy = conf.getBoolean("spark.fs.lazy", false);
+        gramMaxBytes = conf.getLong("spark.fs.gram.maxBytes", 256L * 1024 * 1024);
+        prune = conf.getBoolean("spark.fs.prune", true);
+        minSupport = conf.getInt("spark.fs.prune.minSupport", 0);
+        batchSize = conf.getInt("spark.fs.batch.size", 1);
+        batchCorrection = conf.getBoolean("spark.fs.batch.correction", true);
+        batchReport = conf.getBoolean("spark.fs.batch.report", false);
+        layout = conf.get("spark.fs.layout", "auto");
+        wideRatio = conf.getDouble("spark.fs.layout.wideRatio", 10);
+        numberOfShards = conf.getInt("spark.fs.layout.shards", 0);
+        treeDepth = conf.getInt("spark.fs.treeDepth", 2);
+        mergeOutput = conf.getBoolean("spark.fs.output.merge", true);
+        checkpointPath = conf.get("spark.fs.checkpoint.path", null);
+        checkpointIterations = conf.getInt("spark.fs.checkpoint.iterations", 50);
+        checkpointSeconds = conf.getInt("spark.fs.checkpoint.seconds", 0);
+        cachePath = conf.get("spark.fs.cache.path", null);
+        listenerFile = conf.get("spark.fs.listener.file", null);
+        metricsFile = conf.get("spark.fs.metrics.file", null);
+        storageLevel = StorageLevel.fromString(conf.get("spark.fs.storageLevel", "MEMORY_ONLY"));
+    }
+
+    /**
+     * Get the maximum density of a partition that is still stored as sparse matrix.
+     * @return ratio of non-zero values (0.0 stores every partition dense)
+     */
+    public double getSparseMaxDensity() {
+        return sparseMaxDensity;
+    }
+
+    /**
+     * Check whether partitions with only 0/1 values are stored as bitsets.
+     * @return true to store binary partitions as bitsets
+     */
+    public boolean useBitset() {
+        return bitset;
+    }
+
+    /**
+     * Check whether the greedy loop reuses the accumulated cross-products.
+     * @return true for one distributed pass per iteration, false to recompute step 10 every iteration
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Check whether the incremental greedy loop uses lazy evaluation: the last score of each feature
+     * is kept as upper bound and only the features on top of a max-heap are refreshed.
+     * @return true for lazy evaluation, false to refresh and scan all features every iteration
+     */
+    public boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Get the memory budget for the Gram matrix. If d^2 doubles fit into it, X^T X is computed
+     * in one pass and all iterations run on the driver.
+     * @return size in bytes (0 disables the Gram matrix)
+     */
+    public long getGramMaxBytes() {
+        return gramMaxBytes;
+    }
+
+    /**
+     * Check whether features that cannot contribute are dropped before the selection: constant
+     * features, features below the minimum support and duplicates of other features.
+     * @return true to prune features
+     */
+    public boolean prune() {
+        return prune;
+    }
+
+    /**
+     * Get the minimum number of non-zero values of a feature that is kept when pruning.
+     * @return minimum support (0 keeps all non-constant features)
+     */
+    public int getMinSupport() {
+        return minSupport;
+    }
+
+    /**
+     * Get the number of features that the incremental greedy loop selects per distributed round.
+     * @return batch size, 1 for strict greedy
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Check whether the features of a batch are chosen greedily with updated scores on the driver.
+     * @return true to correct the batch (same result as strict greedy), false to take the whole batch
+     */
+    public boolean useBatchCorrection() {
+        return batchCorrection;
+    }
+
+    /**
+     * Check whether a batched selection is compared with strict greedy.
+     * @return true to run strict greedy as well and print a quality report
+     */
+    public boolean reportBatchQuality() {
+        return batchReport;
+    }
+
+    /**
+     * Decide whether the greedy loop runs on data partitioned by features.
+     * @param features number of features
+     * @param instances number of data points
+     * @param gramFits whether the Gram matrix fits into its memory budget
+     * @return true for feature shards, false for blocks of data points
+     */
+    public boolean useFeatureShards(int features, int instances, boolean gramFits) {
+        if(layout.equals("auto")) {
+            return !gramFits && features >= wideRatio * instances;
+        }
+
+        return layout.equals("features");
+    }
+
+    /**
+     * Get the number of feature shards.
+     * @return number of shards, 0 to use the number of partitions
+     */
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    /**
+     * Get the depth of the aggregation trees. With depth 1 the driver merges the results of all
+     * partitions itself, a higher depth merges them on the executors first.
+     * @return depth of treeAggregate
+     */
+    public int getTreeDepth() {
+        return treeDepth;
+    }
+
+    /**
+     * Check whether the driver merges the part files of the output into one local file.
+     * @return true for one output file, false to keep the output as directory of part files
+     */
+    public boolean mergeOutput() {
+        return mergeOutput;
+    }
+
+    /**
+     * Get the directory where the state of the greedy selection is saved and resumed from.
+     * @return local or distributed path, null if checkpoints are disabled
+     */
+    public String getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    /**
+     * Get the number of selected features after which the checkpoint is written again.
+     * @return number of iterations, 0 to only write by time
+     */
+    public int getCheckpointIterations() {
+        return checkpointIterations;
+    }
+
+    /**
+     * Get the time after which the checkpoint is written again.
+     * @return seconds, 0 to only write by iterations
+     */
+    public int getCheckpointSeconds() {
+        return checkpointSeconds;
+    }
+
+    /**
+     * Get the directory where selections are cached for the same data and options.
+     * @return local or distributed path, null if the cache is disabled
+     */
+    public String getCachePath() {
+        return cachePath;
+    }
+
+    /**
+     * Get the local file to which the selected features are appended while they are chosen.
+     * @return file name, null if disabled
+     */
+    public String getListenerFile() {
+        return listenerFile;
+    }
+
+    /**
+     * Get the local file to which the metrics of every stage are appended as JSON lines.
+     * @return file name, null if disabled
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Get the storage level of the feature blocks, which are kept for the whole selection.
+     * @return storage level, MEMORY_ONLY by default
+     */
+    public StorageLevel getStorageLevel() {
+        return storageLevel;
+    }
+}
@@ -0,0 +1,45 @@
+package io;
+
+import java.io.Serializable;
+
+/**
+ * Update that is sent to every feature shard when a feature is selected.
+ */
+public class ShardUpdate implements Serializable
+{
+    private int index;
+    private double[] column;
+    private double[] border;
+    private double[] u;
+
+    /**
+     * Construct the update for a selected feature f.
+     * @param index index of the selected feature
+     * @param column values of f for all data points
+     * @param border new row of the Cholesky factor, or null if f is linearly dependent on the selection
+     * @param u new row of U = L^-1 CY1^T
+     */
+    public ShardUpdate(int index, double[] column, double[] border, double[] u)
+    {
+        this.index = index;
+        this.column = column;
+        this.border = border;
+        this.u = u;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double[] getColumn() {
+        return column;
+    }
+
+    public double[] getBorder() {
+        return border;
+    }
+
+    public double[] getU() {
+        return u;
+    }
+}
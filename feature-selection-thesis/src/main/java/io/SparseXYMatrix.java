@@ -0,0 +1,245 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+
+import java.util.Arrays;
+
+/**
+ * Features (X) in compressed sparse row (CSR) format and the class of each data point.
+ * Used for partitions where only a small part of X is non-zero, e.g. Dorothea.
+ */
+public class SparseXYMatrix implements FeatureBlock
+{
+    private int columns;
+    private int[] rowPointers;
+    private int[] columnIndexes;
+    private double[] values;
+    private int[] classes;
+    private int numberOfClasses;
+
+    /**
+     * Matrix in CSR format: the non-zero values of row i are at positions rowPointers[i]
+     * to rowPointers[i+1] - 1 of columnIndexes and values, with ascending column indexes.
+     * @param columns number of features
+     * @param rowPointers start position of each row, followed by the number of non-zero values
+     * @param columnIndexes column index of each non-zero value
+     * @param values non-zero values
+     * @param classes class of each row
+     * @param numberOfClasses number of classes
+     */
+    public SparseXYMatrix(int columns, int[] rowPointers, int[] columnIndexes, double[] values, int[] classes, int numberOfClasses) {
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndexes = columnIndexes;
+        this.values = values;
+        this.classes = classes;
+        this.numberOfClasses = numberOfClasses;
+    }
+
+    public int[] getClasses() {
+        return classes;
+    }
+
+    public int getRows() {
+        return rowPointers.length - 1;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the number of non-zero values.
+     * @return number of stored values
+     */
+    public int getNonZeros() {
+        return rowPointers[getRows()];
+    }
+
+    public DoubleMatrix classSums() {
+        DoubleMatrix result = new DoubleMatrix(numberOfClasses, columns);
+        int rows = getRows();
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                result.data[columnIndexes[p] * numberOfClasses + classes[i]] += values[p];
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix crossProduct(DoubleMatrix m) {
+        int rows = getRows();
+        int width = m.getColumns();
+        DoubleMatrix result = new DoubleMatrix(width, columns);
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                int offset = columnIndexes[p] * width;
+                double value = values[p];
+
+                for(int q = 0; q < width; q++) {
+                    result.data[offset + q] += m.data[i + q * rows] * value;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix squaredColumnSums() {
+        DoubleMatrix result = new DoubleMatrix(1, columns);
+        int nonZeros = getNonZeros();
+
+        for(int p = 0; p < nonZeros; p++) {
+            result.data[columnIndexes[p]] += values[p] * values[p];
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix columnCrossProducts(int index) {
+        DoubleMatrix result = new DoubleMatrix(columns);
+        int rows = getRows();
+
+        for(int i = 0; i < rows; i++) {
+            double f = get(i, index);
+
+            if(f != 0) {
+                for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                    result.data[columnIndexes[p]] += values[p] * f;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix gramMatrix() {
+        DoubleMatrix result = new DoubleMatrix(columns, columns);
+        int rows = getRows();
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                int offset = columnIndexes[p] * columns;
+
+                for(int q = rowPointers[i]; q < rowPointers[i + 1]; q++) {
+                    result.data[offset + columnIndexes[q]] += values[p] * values[q];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix getColumns(int[] indexes) {
+        int rows = getRows();
+        DoubleMatrix result = new DoubleMatrix(rows, indexes.length);
+
+        for(int j = 0; j < indexes.length; j++) {
+            for(int i = 0; i < rows; i++) {
+                result.put(i, j, get(i, indexes[j]));
+            }
+        }
+
+        return result;
+    }
+
+    public SparseXYMatrix toSparse() {
+        return this;
+    }
+
+    /**
+     * Get the start position of each row, followed by the number of non-zero values.
+     * @return row pointers
+     */
+    public int[] getRowPointers() {
+        return rowPointers;
+    }
+
+    /**
+     * Get the column index of each non-zero value.
+     * @return column indexes
+     */
+    public int[] getColumnIndexes() {
+        return columnIndexes;
+    }
+
+    /**
+     * Get the non-zero values.
+     * @return values
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Split the features of this block into ranges of equal width, e.g. to transpose the data
+     * into feature shards. The classes are not part of the ranges.
+     * @param width number of features per range
+     * @return one block per range, with column indexes relative to the start of the range
+     */
+    public SparseXYMatrix[] splitColumns(int width) {
+        int rows = getRows();
+        int ranges = (columns + width - 1) / width;
+        int counts[][] = new int[ranges][rows + 1];
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                counts[columnIndexes[p] / width][i + 1]++;
+            }
+        }
+
+        SparseXYMatrix result[] = new SparseXYMatrix[ranges];
+
+        for(int r = 0; r < ranges; r++) {
+            for(int i = 0; i < rows; i++) {
+                counts[r][i + 1] += counts[r][i];
+            }
+
+            result[r] = new SparseXYMatrix(Math.min(width, columns - r * width), counts[r],
+                    new int[counts[r][rows]], new double[counts[r][rows]], null, 0);
+        }
+
+        int next[] = new int[ranges];
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                int r = columnIndexes[p] / width;
+                result[r].columnIndexes[next[r]] = columnIndexes[p] - r * width;
+                result[r].values[next[r]++] = values[p];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get a single value by binary search in its row.
+     * @param row row index
+     * @param column column index
+     * @return value of X at the given position
+     */
+    public double get(int row, int column) {
+        int p = Arrays.binarySearch(columnIndexes, rowPointers[row], rowPointers[row + 1], column);
+        return p < 0 ? 0.0 : values[p];
+    }
+
+    /**
+     * Convert this block into a dense matrix, used for partitions with many non-zero values.
+     * @return dense block with the same values
+     */
+    public XYMatrix toDense() {
+        int rows = getRows();
+        DoubleMatrix x = new DoubleMatrix(rows, columns);
+
+        for(int i = 0; i < rows; i++) {
+            for(int p = rowPointers[i]; p < rowPointers[i + 1]; p++) {
+                x.put(i, columnIndexes[p], values[p]);
+            }
+        }
+
+        return new XYMatrix(x, classes, numberOfClasses);
+    }
+}
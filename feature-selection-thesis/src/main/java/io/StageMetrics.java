@@ -0,0 +1,196 @@
+package io;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Metrics of one stage of a run, e.g. reading the input or one greedy iteration: wall time and
+ * the time of the linear algebra on the driver, and the Spark jobs of the stage with their
+ * tasks, executor time, shuffle and result bytes, and the size of the broadcasts it created.
+ * A stage whose time is mostly driver time is bound by the driver, one with much executor time
+ * by the executors, and one with much shuffle, result or broadcast data by the network.
+ */
+public class StageMetrics
+{
+    private String name;
+    private int iteration;
+    private long startTime;
+    private long wallTime = -1;
+    private long driverNanos = 0;
+    private List<Integer> jobIds = new ArrayList<>();
+    private List<Integer> sparkStageIds = new ArrayList<>();
+    private Set<Integer> expectedJobs = new HashSet<>();
+    private Set<Integer> endedJobs = new HashSet<>();
+    private int runningJobs = 0;
+    private int tasks = 0;
+    private long executorTime = 0;
+    private long shuffleReadBytes = 0;
+    private long shuffleWriteBytes = 0;
+    private long resultBytes = 0;
+    private long broadcastBytes = 0;
+
+    StageMetrics(String name, int iteration)
+    {
+        this.name = name;
+        this.iteration = iteration;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * End the stage.
+     * @param jobs ids of the jobs that the scheduler ran for the stage
+     */
+    void end(int[] jobs)
+    {
+        wallTime = System.currentTimeMillis() - startTime;
+
+        for(int job : jobs) {
+            expectedJobs.add(job);
+        }
+    }
+
+    boolean isDone()
+    {
+        return wallTime >= 0 && runningJobs == 0 && endedJobs.containsAll(expectedJobs);
+    }
+
+    void addDriverTime(long nanos)
+    {
+        driverNanos += nanos;
+    }
+
+    void addBroadcast(long bytes)
+    {
+        broadcastBytes += bytes;
+    }
+
+    void startJob(int jobId)
+    {
+        jobIds.add(jobId);
+        runningJobs++;
+    }
+
+    void endJob(int jobId)
+    {
+        endedJobs.add(jobId);
+        runningJobs--;
+    }
+
+    void addSparkStage(int stageId)
+    {
+        sparkStageIds.add(stageId);
+    }
+
+    void addTask(long runTime, long shuffleRead, long shuffleWrite, long result)
+    {
+        tasks++;
+        executorTime += runTime;
+        shuffleReadBytes += shuffleRead;
+        shuffleWriteBytes += shuffleWrite;
+        resultBytes += result;
+    }
+
+    /**
+     * Get the name of the stage: ingest, classes, build, scoring, resume, iteration, write or upload.
+     * @return stage name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of the greedy iteration (or round of a batched selection).
+     * @return iteration starting at 1, -1 for other stages
+     */
+    public int getIteration() {
+        return iteration;
+    }
+
+    /**
+     * Get the time the stage started.
+     * @return milliseconds since the epoch
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * Get the time of the linear algebra on the driver.
+     * @return milliseconds
+     */
+    public double getDriverTime() {
+        return driverNanos / 1e6;
+    }
+
+    public List<Integer> getJobIds() {
+        return jobIds;
+    }
+
+    public List<Integer> getSparkStageIds() {
+        return sparkStageIds;
+    }
+
+    public int getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Get the time the tasks of the stage ran on the executors.
+     * @return milliseconds summed over all tasks
+     */
+    public long getExecutorTime() {
+        return executorTime;
+    }
+
+    public long getShuffleReadBytes() {
+        return shuffleReadBytes;
+    }
+
+    public long getShuffleWriteBytes() {
+        return shuffleWriteBytes;
+    }
+
+    /**
+     * Get the size of the task results sent to the driver.
+     * @return bytes summed over all tasks
+     */
+    public long getResultBytes() {
+        return resultBytes;
+    }
+
+    /**
+     * Get the serialized size of the broadcasts the stage created.
+     * @return bytes
+     */
+    public long getBroadcastBytes() {
+        return broadcastBytes;
+    }
+
+    /**
+     * Format the metrics as one JSON object.
+     * @return JSON without line breaks
+     */
+    public String toJson()
+    {
+        return "{\"stage\":\"" + name + "\""
+                + (iteration >= 0 ? ",\"iteration\":" + iteration : "")
+                + ",\"start\":" + startTime
+                + ",\"wallMs\":" + wallTime
+                + ",\"driverMs\":" + String.format(Locale.ROOT, "%.3f", getDriverTime())
+                + ",\"jobs\":" + jobIds
+                + ",\"sparkStages\":" + sparkStageIds
+                + ",\"tasks\":" + tasks
+                + ",\"executorMs\":" + executorTime
+                + ",\"shuffleReadBytes\":" + shuffleReadBytes
+                + ",\"shuffleWriteBytes\":" + shuffleWriteBytes
+                + ",\"resultBytes\":" + resultBytes
+                + ",\"broadcastBytes\":" + broadcastBytes + "}";
+    }
+}
@@ -2,26 +2,25 @@ package io;
 
 import org.jblas.DoubleMatrix;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-
 /**
- * Matrix that represents features (X) and class labels as values (Y).
+ * Matrix that represents features (X) and the class of each data point.
  */
-public class XYMatrix implements Serializable
+public class XYMatrix implements FeatureBlock
 {
     private DoubleMatrix x;
-    private DoubleMatrix y;
-    private ArrayList<String> labels;
+    private int[] classes;
+    private int numberOfClasses;
 
     /**
-     * Matrix that represents features (X) and class labels as values (Y).
+     * Matrix that represents features (X) and the class of each data point.
      * @param x feature matrix
-     * @param y response matrix
+     * @param classes class of each row
+     * @param numberOfClasses number of classes
      */
-    public XYMatrix(DoubleMatrix x, DoubleMatrix y) {
+    public XYMatrix(DoubleMatrix x, int[] classes, int numberOfClasses) {
         this.x = x;
-        this.y = y;
+        this.classes = classes;
+        this.numberOfClasses = numberOfClasses;
     }
 
     /**
@@ -40,19 +39,79 @@ public class XYMatrix implements Serializable
         this.x = x;
     }
 
-    /**
-     * Get the response matrix
-     * @return response matrix
-     */
-    public DoubleMatrix getY() {
-        return y;
+    public int[] getClasses() {
+        return classes;
     }
 
-    /**
-     * Set the response matrix
-     * @param y response matrix
-     */
-    public void setY(DoubleMatrix y) {
-        this.y = y;
+    public int getRows() {
+        return x.getRows();
+    }
+
+    public int getColumns() {
+        return x.getColumns();
+    }
+
+    public DoubleMatrix classSums() {
+        int rows = x.getRows();
+        DoubleMatrix result = new DoubleMatrix(numberOfClasses, x.getColumns());
+
+        for(int j = 0; j < x.getColumns(); j++) {
+            for(int i = 0; i < rows; i++) {
+                result.data[j * numberOfClasses + classes[i]] += x.data[j * rows + i];
+            }
+        }
+
+        return result;
+    }
+
+    public DoubleMatrix crossProduct(DoubleMatrix m) {
+        return m.transpose().mmul(x);
+    }
+
+    public DoubleMatrix squaredColumnSums() {
+        return x.mul(x).columnSums();
+    }
+
+    public DoubleMatrix columnCrossProducts(int index) {
+        return x.transpose().mmul(x.getColumn(index));
+    }
+
+    public DoubleMatrix gramMatrix() {
+        return x.transpose().mmul(x);
+    }
+
+    public SparseXYMatrix toSparse() {
+        int rows = x.getRows();
+        int columns = x.getColumns();
+        int rowPointers[] = new int[rows + 1];
+        int nonZeros = 0;
+
+        for(int i = 0; i < x.length; i++) {
+            if(x.data[i] != 0) {
+                nonZeros++;
+            }
+        }
+
+        int columnIndexes[] = new int[nonZeros];
+        double values[] = new double[nonZeros];
+
+        for(int i = 0, p = 0; i < rows; i++) {
+            for(int j = 0; j < columns; j++) {
+                double value = x.get(i, j);
+
+                if(value != 0) {
+                    columnIndexes[p] = j;
+                    values[p++] = value;
+                }
+            }
+
+            rowPointers[i + 1] = p;
+        }
+
+        return new SparseXYMatrix(columns, rowPointers, columnIndexes, values, classes, numberOfClasses);
+    }
+
+    public DoubleMatrix getColumns(int[] indexes) {
+        return x.getColumns(indexes);
     }
 }
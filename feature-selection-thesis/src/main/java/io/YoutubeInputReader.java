@@ -1,55 +1,35 @@
 package io;
 
-public class YoutubeInputReader {
-/*public class YoutubeInputReader extends FSInputReader {
-    /*private static final String FILE_NAME = "ad.data";
-    private int numberOfInstances = 0;
-    private Map<String, ResponseMatrixValue> responseMatrixValueMap = new HashMap<>();
-
+/**
+ * Input reader for the Youtube Multiview Video Games dataset
+ * (https://archive.ics.uci.edu/ml/datasets/YouTube+Multiview+Video+Games+Dataset)
+ * from UCI Machine Learning Repository, in libsvm format. Every game is its own class, so all
+ * classes are scored together with one column of Y per class.
+ */
+public class YoutubeInputReader extends AdsInputReader
+{
     /**
-     * Initiate input file name to Youtube Multiview Video Games dataset
-     * (https://archive.ics.uci.edu/ml/datasets/YouTube+Multiview+Video+Games+Dataset)
-     * from UCI Machine Learning Repository.
+     * Initiate input file name to Youtube Multiview Video Games dataset.
      */
-    /*public YoutubeInputReader(String jarDir){
-        super(jarDir, FILE_NAME);
-    }
-
-    public void process(int loopNumber, String outputName){
-        countClasses(getRawData());
+    public YoutubeInputReader(String filename, int numOfExecutors)
+    {
+        super(filename, numOfExecutors);
     }
 
     /**
-     * Count number of instances in each class and compute the values for response matrix.
-     * @param logData input data
+     * Map each label to its own class.
+     * @param labels labels of the dataset in ascending order
+     * @return class of each label, classes are numbered from 0
      */
-    /*private void countClasses(JavaRDD<String> logData)
+    @Override
+    protected int[] getLabelClasses(double[] labels)
     {
-        // map values in class column into pair of <class, 1>
-        JavaPairRDD<String, Integer> pairs = logData.mapToPair(s -> {
-            String temp[] = s.split(" ");
-            return new Tuple2<>(temp[0], 1);
-        });
-
-        JavaPairRDD<String, Integer> counts = pairs.reduceByKey((a, b) -> a + b);
-        List<Tuple2<String, Integer>> list = counts.collect();
+        int labelClasses[] = new int[labels.length];
 
-        numberOfInstances = countNumberOfInstances(list);
-        for(Tuple2<String, Integer> tuple : list){
-            String classLabel = tuple._1();
-            int numberOfClassOccurence = tuple._2();
-            ResponseMatrixValue value = new ResponseMatrixValue(numberOfClassOccurence, numberOfInstances);
-            responseMatrixValueMap.put(classLabel, value);
+        for(int c = 0; c < labels.length; c++) {
+            labelClasses[c] = c;
         }
-    }
-
-    private int countNumberOfInstances(List<Tuple2<String, Integer>> list){
-        int counter = 0;
 
-        for(Tuple2<String, Integer> tuple : list){
-            counter += tuple._2();
-        }
-
-        return counter;
-    }*/
+        return labelClasses;
+    }
 }
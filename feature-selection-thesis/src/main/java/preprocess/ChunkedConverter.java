@@ -0,0 +1,232 @@
+package preprocess;
+
+import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Converts a text file line by line in a streaming pipeline: the input is read in chunks of whole
+ * lines, the chunks are converted on a pool of worker threads and the results are written in the
+ * input order. Only a bounded number of chunks is in flight, so the memory does not depend on the
+ * input size. Column statistics (maxima) are gathered by the workers in the same pass.
+ */
+public class ChunkedConverter
+{
+    /**
+     * Conversion of one input line.
+     */
+    public interface LineConverter
+    {
+        /**
+         * Convert one line.
+         * @param line input line without line break
+         * @param pairedLine line with the same number from the paired input, or null
+         * @param out output of the chunk, the converted line has to end with a line break
+         * @param maxima column maxima to update
+         */
+        void convert(String line, String pairedLine, StringBuilder out, double[] maxima);
+    }
+
+    /**
+     * Output buffer of each worker thread, reused for all chunks of the worker.
+     */
+    private static final ThreadLocal<StringBuilder> OUTPUT = ThreadLocal.withInitial(StringBuilder::new);
+
+    private int threads;
+    private int chunkSize;
+
+    /**
+     * Create a converter with one worker per core and chunks of 4 MB.
+     */
+    public ChunkedConverter()
+    {
+        this(Runtime.getRuntime().availableProcessors(), 4 << 20);
+    }
+
+    /**
+     * Create a converter.
+     * @param threads number of worker threads
+     * @param chunkSize size of the input chunks in bytes (longer lines get a larger chunk)
+     */
+    public ChunkedConverter(int threads, int chunkSize)
+    {
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Convert a file.
+     * @param inputName input file
+     * @param pairedName file whose lines are given together with the lines of the input (e.g. labels), or null
+     * @param outputName output file, or null to only gather the statistics
+     * @param columns number of column maxima
+     * @param converter conversion of one line
+     * @return column maxima over all lines
+     * @throws IOException if a file cannot be read or written
+     */
+    public double[] convert(String inputName, String pairedName, String outputName, int columns,
+                            LineConverter converter) throws IOException
+    {
+        double maxima[] = new double[columns];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Queue<Future<Chunk>> inFlight = new ArrayDeque<>();
+
+        try(FileChannel input = FileChannel.open(Paths.get(inputName), StandardOpenOption.READ);
+            BufferedReader paired = pairedName == null ? null : new BufferedReader(new InputStreamReader(new FileInputStream(pairedName)));
+            OutputStream output = outputName == null ? null : new BufferedOutputStream(new FileOutputStream(outputName), 1 << 16)) {
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+
+            while(true) {
+                boolean end = input.read(buffer) < 0;
+                int last = lastLineBreak(buffer);
+
+                if(last < 0 && !end) {
+                    if(!buffer.hasRemaining()) {
+                        // line longer than a chunk
+                        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                        larger.put(buffer.array(), 0, buffer.position());
+                        buffer = larger;
+                    }
+
+                    continue;
+                }
+
+                int length = end ? buffer.position() : last + 1;
+                byte bytes[] = Arrays.copyOf(buffer.array(), length);
+                String pairedLines[] = paired == null ? null : readLines(paired, countLines(bytes));
+
+                inFlight.add(pool.submit(() -> convertChunk(bytes, pairedLines, columns, converter)));
+
+                // keep the remainder (start of the next line) for the next chunk
+                int remainder = buffer.position() - length;
+                System.arraycopy(buffer.array(), length, buffer.array(), 0, remainder);
+                ((Buffer) buffer).position(remainder);
+
+                if(inFlight.size() >= 2 * threads || end) {
+                    while(inFlight.size() > (end ? 0 : threads)) {
+                        write(inFlight.remove(), output, maxima);
+                    }
+                }
+
+                if(end) {
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return maxima;
+    }
+
+    private static void write(Future<Chunk> future, OutputStream output, double[] maxima) throws IOException
+    {
+        Chunk chunk;
+
+        try {
+            chunk = future.get();
+        } catch(InterruptedException | ExecutionException e) {
+            throw new IOException("Conversion failed", e);
+        }
+
+        if(output != null) {
+            output.write(chunk.bytes);
+        }
+
+        for(int i = 0; i < maxima.length; i++) {
+            maxima[i] = Math.max(maxima[i], chunk.maxima[i]);
+        }
+    }
+
+    /**
+     * Convert the lines of one chunk on a worker thread.
+     */
+    private static Chunk convertChunk(byte[] bytes, String[] pairedLines, int columns, LineConverter converter)
+    {
+        StringBuilder out = OUTPUT.get();
+        out.setLength(0);
+        Chunk chunk = new Chunk();
+        chunk.maxima = new double[columns];
+        int start = 0, line = 0;
+
+        while(start < bytes.length) {
+            int end = start;
+
+            while(end < bytes.length && bytes[end] != '\n') {
+                end++;
+            }
+
+            int length = end > start && bytes[end - 1] == '\r' ? end - start - 1 : end - start;
+
+            if(length > 0) {
+                converter.convert(new String(bytes, start, length, StandardCharsets.UTF_8),
+                        pairedLines == null ? null : pairedLines[line], out, chunk.maxima);
+            }
+
+            line++;
+            start = end + 1;
+        }
+
+        chunk.bytes = out.toString().getBytes(StandardCharsets.UTF_8);
+
+        return chunk;
+    }
+
+    private static int lastLineBreak(ByteBuffer buffer)
+    {
+        byte array[] = buffer.array();
+
+        for(int i = buffer.position() - 1; i >= 0; i--) {
+            if(array[i] == '\n') {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static int countLines(byte[] bytes)
+    {
+        int count = 0;
+
+        for(byte b : bytes) {
+            if(b == '\n') {
+                count++;
+            }
+        }
+
+        // last line without line break at the end of the file
+        return bytes.length > 0 && bytes[bytes.length - 1] != '\n' ? count + 1 : count;
+    }
+
+    private static String[] readLines(BufferedReader reader, int count) throws IOException
+    {
+        String lines[] = new String[count];
+
+        for(int i = 0; i < count; i++) {
+            lines[i] = reader.readLine();
+        }
+
+        return lines;
+    }
+
+    /**
+     * Converted chunk.
+     */
+    private static class Chunk
+    {
+        private byte[] bytes;
+        private double[] maxima;
+    }
+}
@@ -0,0 +1,243 @@
+package preprocess;
+
+import io.BinaryDatasetWriter;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates a two-class dataset with planted features, to measure the selection at any scale
+ * without real data. Labels are 1 (with the given ratio) and 0. Noise features are 1 with the
+ * given density, independent of the label. Informative features are 1 for most data points of
+ * class 1 and few of class 0. Redundant features are copies of informative features with a few
+ * values flipped, so they add almost nothing once their source is selected.
+ *
+ * The dataset is written in libsvm format and in the binary format (BinaryDataset) in one pass,
+ * and the planted features are listed in "<output>.planted" with the indexes that the selector
+ * prints (starting at 0): one line "informative <indexes>" and one line "redundant <indexes>".
+ */
+public class SyntheticDataset
+{
+    /**
+     * Probability that an informative feature is 1 for a data point of class 1 and of class 0.
+     */
+    private static final double INFORMATIVE_IN_CLASS = 0.6;
+    private static final double INFORMATIVE_OTHER_CLASS = 0.1;
+
+    /**
+     * Probability that a value of a redundant feature differs from its source.
+     */
+    private static final double REDUNDANT_FLIP = 0.02;
+
+    private int rows;
+    private int features;
+    private double density;
+    private double positiveRatio;
+    private int[] informative;
+    private int[] redundant;
+    private Random random;
+
+    /**
+     * Generate a dataset with program arguments:
+     * 0: (String) output file name in libsvm format, the binary file gets the extension ".bin" instead of a trailing ".data"
+     * 1: (Integer) number of data points
+     * 2: (Integer) number of features
+     * 3: (Double) ratio of non-zero values of the noise features
+     * 4: (Double) ratio of data points with label 1
+     * 5: (Integer) number of informative features
+     * 6: (Integer) number of redundant features
+     * 7: (Long) random seed (optional, default 1)
+     * @param args Program arguments as above.
+     */
+    public static void main(String args[]) throws Exception
+    {
+        SyntheticDataset dataset = new SyntheticDataset(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+                Double.parseDouble(args[3]), Double.parseDouble(args[4]), Integer.parseInt(args[5]),
+                Integer.parseInt(args[6]), args.length > 7 ? Long.parseLong(args[7]) : 1L);
+
+        dataset.write(args[0], getBinaryName(args[0]));
+        dataset.writePlanted(args[0] + ".planted");
+    }
+
+    /**
+     * Get the name of the binary file next to the libsvm file.
+     * @param fileName name of the libsvm file
+     * @return the name with a trailing ".data" replaced by ".bin", otherwise with ".bin" appended
+     */
+    private static String getBinaryName(String fileName)
+    {
+        return (fileName.endsWith(".data") ? fileName.substring(0, fileName.length() - ".data".length()) : fileName) + ".bin";
+    }
+
+    /**
+     * Choose the planted features.
+     * @param rows number of data points
+     * @param features number of features
+     * @param density ratio of non-zero values of the noise features
+     * @param positiveRatio ratio of data points with label 1
+     * @param numberOfInformative number of informative features
+     * @param numberOfRedundant number of redundant features
+     * @param seed random seed, the same seed gives the same dataset
+     */
+    public SyntheticDataset(int rows, int features, double density, double positiveRatio,
+                            int numberOfInformative, int numberOfRedundant, long seed)
+    {
+        if(numberOfInformative + numberOfRedundant > features || numberOfRedundant > 0 && numberOfInformative == 0) {
+            throw new IllegalArgumentException("Invalid number of planted features: " + numberOfInformative
+                    + " informative, " + numberOfRedundant + " redundant of " + features);
+        }
+
+        this.rows = rows;
+        this.features = features;
+        this.density = density;
+        this.positiveRatio = positiveRatio;
+        this.random = new Random(seed);
+
+        // planted features at random positions among the noise features
+        int permutation[] = new int[features];
+
+        for(int j = 0; j < features; j++) {
+            int other = random.nextInt(j + 1);
+            permutation[j] = permutation[other];
+            permutation[other] = j;
+        }
+
+        informative = Arrays.copyOfRange(permutation, 0, numberOfInformative);
+        redundant = Arrays.copyOfRange(permutation, numberOfInformative, numberOfInformative + numberOfRedundant);
+    }
+
+    /**
+     * Write the dataset.
+     * @param outputName file in libsvm format
+     * @param binaryName file in the binary format, or null; has to be another file than outputName
+     * @throws IOException if a file cannot be written
+     */
+    public void write(String outputName, String binaryName) throws IOException
+    {
+        if(binaryName != null && new File(binaryName).getCanonicalFile().equals(new File(outputName).getCanonicalFile())) {
+            throw new IllegalArgumentException("Binary file is the output file: " + binaryName);
+        }
+
+        // planted features in ascending order with their role: informative i or redundant copy of i
+        int planted[] = new int[informative.length + redundant.length];
+        int source[] = new int[features];
+        Arrays.fill(source, -1);
+
+        for(int i = 0; i < informative.length; i++) {
+            planted[i] = informative[i];
+            source[informative[i]] = i;
+        }
+
+        for(int r = 0; r < redundant.length; r++) {
+            planted[informative.length + r] = redundant[r];
+            source[redundant[r]] = informative.length + r;
+        }
+
+        Arrays.sort(planted);
+
+        boolean informativeValues[] = new boolean[informative.length];
+        int indexes[] = new int[64];
+        double values[] = new double[64];
+        StringBuilder line = new StringBuilder();
+
+        try(Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputName)), 1 << 16);
+            BinaryDatasetWriter binary = binaryName == null ? null : new BinaryDatasetWriter(binaryName, true)) {
+            for(int row = 0; row < rows; row++) {
+                boolean positive = random.nextDouble() < positiveRatio;
+
+                for(int i = 0; i < informative.length; i++) {
+                    informativeValues[i] = random.nextDouble() < (positive ? INFORMATIVE_IN_CLASS : INFORMATIVE_OTHER_CLASS);
+                }
+
+                // noise features by skipping geometrically distributed gaps, merged with the planted ones
+                int size = 0, next = nextNoise(-1), p = 0;
+
+                while(next < features || p < planted.length) {
+                    boolean isPlanted = p < planted.length && planted[p] <= next;
+                    int j = isPlanted ? planted[p++] : next;
+                    boolean value;
+
+                    if(isPlanted) {
+                        int s = source[j];
+                        value = s < informative.length ? informativeValues[s]
+                                : informativeValues[(s - informative.length) % informative.length] ^ random.nextDouble() < REDUNDANT_FLIP;
+
+                        if(j == next) {
+                            next = nextNoise(next);
+                        }
+                    } else {
+                        value = true;
+                        next = nextNoise(next);
+                    }
+
+                    if(value) {
+                        if(size == indexes.length) {
+                            indexes = Arrays.copyOf(indexes, size * 2);
+                            values = Arrays.copyOf(values, size * 2);
+                        }
+
+                        indexes[size] = j;
+                        values[size++] = 1.0;
+                    }
+                }
+
+                line.setLength(0);
+                line.append(positive ? "1" : "0");
+
+                for(int e = 0; e < size; e++) {
+                    line.append(' ').append(indexes[e] + 1).append(":1");
+                }
+
+                out.write(line.append('\n').toString());
+
+                if(binary != null) {
+                    binary.addRow(positive ? 1.0 : 0.0, indexes, values, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the next noise feature after a feature.
+     * @param j last noise feature, -1 at the start of a row
+     * @return index of the next non-zero noise feature, at least the number of features if there is none
+     */
+    private int nextNoise(int j)
+    {
+        if(density <= 0.0) {
+            return features;
+        }
+
+        if(density >= 1.0) {
+            return j + 1;
+        }
+
+        double gap = Math.floor(Math.log(1.0 - random.nextDouble()) / Math.log(1.0 - density));
+        return (int) Math.min(features, j + 1 + gap);
+    }
+
+    /**
+     * Write the planted features.
+     * @param fileName output file name
+     * @throws IOException if the file cannot be written
+     */
+    public void writePlanted(String fileName) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new FileWriter(fileName))) {
+            out.println("informative" + toString(informative));
+            out.println("redundant" + toString(redundant));
+        }
+    }
+
+    private static String toString(int[] indexes)
+    {
+        StringBuilder result = new StringBuilder();
+
+        for(int index : indexes) {
+            result.append(' ').append(index);
+        }
+
+        return result.toString();
+    }
+}
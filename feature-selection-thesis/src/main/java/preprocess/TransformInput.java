@@ -1,5 +1,5 @@
 package preprocess;
-import java.io.*;
+import io.BinaryDatasetWriter;
 
 public class TransformInput
 {
@@ -21,43 +21,36 @@ public class TransformInput
 
             transformDorothea(dorotheaDataFile, dorotheaLabelFile, transformedFile);
         }
+
+        // binary copy for repeated selection and classifier runs without text parsing
+        BinaryDatasetWriter.convert(transformedFile, transformedFile.replace(".data", ".bin"));
     }
 
 
+    /**
+     * Print the maximum of the first three (continuous) columns of the ads data, which are the upper
+     * bounds for the binarization thresholds.
+     */
     public static void countThreshold(String fileName) throws Exception{
-        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(new File(fileName))));
-
-        String line;
-        double threshold[] = new double[3];
-
-        while ((line = in.readLine()) != null) {
-            String temp[] = line.split(",");
-
-            for(int i = 0; i < 3; i++) {
-
-                if(!temp[i].trim().equals("?")){
-                    double max = Double.parseDouble(temp[i]);
-
-                    if (max > threshold[i])
-                        threshold[i] = max;
-                }
-            }
-        }
+        double threshold[] = new ChunkedConverter().convert(fileName, null, null, 3,
+                (line, pairedLine, out, maxima) -> updateMaxima(line.split(","), maxima));
 
         System.out.println(threshold[0] + " " + threshold[1] + " " + threshold[2]);
     }
 
+    /**
+     * Convert the ads data to libsvm format. The maxima of the first three columns are gathered in the
+     * same pass and printed.
+     */
     public static void transformAds(String fileName, boolean binaryMode, String outputName, double threshold[]) throws Exception
     {
-        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(new File(fileName))));
-        String line;
-
-        StringBuffer buffer = new StringBuffer();
-        while ((line = in.readLine()) != null) {
+        double maxima[] = new ChunkedConverter().convert(fileName, null, outputName, 3, (line, pairedLine, buffer, max) -> {
             String temp[] = line.split(",");
             String category = temp[temp.length - 1];
             String labelWord = category.substring(0, category.length() - 1); // to remove "." at the end
 
+            updateMaxima(temp, max);
+
             if(binaryMode) {
                 binarize(temp, threshold);
 
@@ -81,28 +74,19 @@ public class TransformInput
             }
 
             buffer.append("\n");
-        }
-
-        buffer.deleteCharAt(buffer.length() - 1);
+        });
 
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputName))));
-        writer.write(buffer.toString());
-        writer.flush();
-        writer.close();
+        System.out.println("Maximum of continuous columns: " + maxima[0] + " " + maxima[1] + " " + maxima[2]);
     }
 
+    /**
+     * Convert the dorothea data and labels to libsvm format.
+     */
     public static void transformDorothea(String inputFileName, String labelName, String outputFileName) throws Exception{
-        BufferedReader inData = new BufferedReader(new InputStreamReader(new FileInputStream(new File(inputFileName))));
-        BufferedReader inLabel = new BufferedReader(new InputStreamReader(new FileInputStream(new File(labelName))));
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outputFileName))));
-
-        String line;
-
-        while ((line = inData.readLine()) != null) {
-            StringBuffer buffer = new StringBuffer();
+        new ChunkedConverter().convert(inputFileName, labelName, outputFileName, 0, (line, labelLine, buffer, max) -> {
             String temp[] = line.split(" ");
 
-            String label = inLabel.readLine().equals("1") ? "1" : "0";
+            String label = labelLine.equals("1") ? "1" : "0";
             buffer.append(label);
 
             for(int i = 0; i < temp.length; i++){
@@ -113,11 +97,18 @@ public class TransformInput
             }
 
             buffer.append("\n");
-            writer.write(buffer.toString());
-        }
+        });
+    }
+
+    private static void updateMaxima(String str[], double maxima[]){
+        for(int i = 0; i < maxima.length; i++) {
+            if(!str[i].trim().equals("?")){
+                double max = Double.parseDouble(str[i]);
 
-        writer.flush();
-        writer.close();
+                if (max > maxima[i])
+                    maxima[i] = max;
+            }
+        }
     }
 
     private static void binarize(String str[], double threshold[]){
@@ -0,0 +1,137 @@
+package io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class BinaryDatasetTest
+{
+    private static final String[] LINES = {
+            "1 1:1 5:1 9:1",
+            "0 2:1",
+            "",
+            "1",
+            "2 3:1 4:1 5:1 6:1 7:1 8:1 9:1 10:1"
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void binaryValuesAreNotStored() throws IOException
+    {
+        File text = writeText(LINES);
+        File binary = new File(folder.getRoot(), "binary.bin");
+        BinaryDatasetWriter.convert(text.getPath(), binary.getPath());
+
+        BinaryDataset dataset = BinaryDataset.open(binary.getPath());
+        assertTrue(dataset.hasBinaryValues());
+        assertRows(text, dataset);
+
+        // 12 bytes per row and 4 per index, no values
+        long records = 4 * 12 + 4 * 12;
+        assertEquals(BinaryDataset.HEADER_SIZE + records + 8 * 5 + 12 * 3, binary.length());
+    }
+
+    @Test
+    public void otherValuesAreStored() throws IOException
+    {
+        File text = writeText("1 1:1 5:1", "0 2:0.5 7:-3", "1 3:1");
+        File binary = new File(folder.getRoot(), "values.bin");
+        BinaryDatasetWriter.convert(text.getPath(), binary.getPath());
+
+        BinaryDataset dataset = BinaryDataset.open(binary.getPath());
+        assertFalse(dataset.hasBinaryValues());
+        assertRows(text, dataset);
+    }
+
+    @Test
+    public void headerHoldsDimensionsAndClasses() throws IOException
+    {
+        File text = writeText(LINES);
+        File binary = new File(folder.getRoot(), "header.bin");
+        BinaryDatasetWriter.convert(text.getPath(), binary.getPath());
+
+        BinaryDataset dataset = BinaryDataset.open(binary.getPath());
+        assertEquals(4, dataset.getRows());
+        assertEquals(10, dataset.getColumns());
+        assertArrayEquals(new double[]{1, 0, 2}, dataset.getLabels(), 0.0);
+        assertArrayEquals(new int[]{2, 1, 1}, dataset.getClassCounts());
+    }
+
+    @Test
+    public void rangesOfRowsAreReadOnTheirOwn() throws IOException
+    {
+        File text = writeText(LINES);
+        File binary = new File(folder.getRoot(), "ranges.bin");
+        BinaryDatasetWriter.convert(text.getPath(), binary.getPath());
+
+        BinaryRowReader reader = BinaryDataset.open(binary.getPath()).read(1, 3);
+        assertTrue(reader.next());
+        assertEquals(0.0, reader.getLabel(), 0.0);
+        assertEquals(1, reader.getSize());
+        assertEquals(1, reader.getIndexes()[0]);
+        assertTrue(reader.next());
+        assertEquals(0, reader.getSize());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void textIsNotTakenForBinary() throws IOException
+    {
+        assertNull(BinaryDataset.open(writeText(LINES).getPath()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void writerWithBinaryValuesRejectsOtherValues() throws IOException
+    {
+        try(BinaryDatasetWriter writer = new BinaryDatasetWriter(new File(folder.getRoot(), "rejected.bin").getPath(), true)) {
+            writer.addRow(1.0, new int[]{0, 3}, new double[]{1.0, 2.0}, 2);
+        }
+    }
+
+    private File writeText(String... lines) throws IOException
+    {
+        File file = folder.newFile();
+
+        try(Writer out = new FileWriter(file)) {
+            for(String line : lines) {
+                out.write(line + "\n");
+            }
+        }
+
+        return file;
+    }
+
+    /**
+     * Check that the binary dataset has the rows of the text file.
+     */
+    private static void assertRows(File text, BinaryDataset dataset) throws IOException
+    {
+        LibSVMParser parser = new LibSVMParser();
+        BinaryRowReader reader = dataset.read(0, dataset.getRows());
+
+        for(String line : Files.readAllLines(text.toPath())) {
+            if(!parser.parse(line)) {
+                continue;
+            }
+
+            assertTrue(reader.next());
+            assertEquals(parser.getLabel(), reader.getLabel(), 0.0);
+            assertEquals(parser.getSize(), reader.getSize());
+            assertArrayEquals(Arrays.copyOf(parser.getIndexes(), parser.getSize()), Arrays.copyOf(reader.getIndexes(), reader.getSize()));
+            assertArrayEquals(Arrays.copyOf(parser.getValues(), parser.getSize()), Arrays.copyOf(reader.getValues(), reader.getSize()), 0.0);
+        }
+
+        assertFalse(reader.next());
+    }
+}
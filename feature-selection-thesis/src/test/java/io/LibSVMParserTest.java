@@ -0,0 +1,77 @@
+package io;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class LibSVMParserTest
+{
+    @Test
+    public void parsesLabelIndexesAndValues()
+    {
+        LibSVMParser parser = new LibSVMParser();
+
+        assertTrue(parser.parse("1 4:1 96:0.5  120:-2.25e1"));
+        assertEquals(1.0, parser.getLabel(), 0.0);
+        assertEquals(3, parser.getSize());
+        assertArrayEquals(new int[]{3, 95, 119}, Arrays.copyOf(parser.getIndexes(), 3));
+        assertArrayEquals(new double[]{1.0, 0.5, -22.5}, Arrays.copyOf(parser.getValues(), 3), 0.0);
+    }
+
+    @Test
+    public void dropsZeroValuesAndSkipsEmptyLines()
+    {
+        LibSVMParser parser = new LibSVMParser();
+
+        assertTrue(parser.parse("0 1:0 2:0.0 3:1"));
+        assertEquals(1, parser.getSize());
+        assertEquals(2, parser.getIndexes()[0]);
+
+        assertFalse(parser.parse("   "));
+        assertTrue(parser.parse("-1"));
+        assertEquals(0, parser.getSize());
+    }
+
+    @Test
+    public void rejectsMissingSeparator()
+    {
+        assertRejected("1 4");
+    }
+
+    @Test
+    public void rejectsMissingValue()
+    {
+        assertRejected("1 4: 5:1");
+    }
+
+    @Test
+    public void rejectsInvalidNumbers()
+    {
+        assertRejected("1 4:x");
+        assertRejected("1 a:1");
+        assertRejected("one 4:1");
+    }
+
+    @Test
+    public void rejectsIndexesOutOfRange()
+    {
+        assertRejected("1 0:1");
+        assertRejected("1 2147483648:1");
+        assertRejected("1 99999999999:1");
+    }
+
+    /**
+     * Check that a line is rejected with an error that names it.
+     */
+    private static void assertRejected(String line)
+    {
+        try {
+            new LibSVMParser().parse(line);
+            fail("Accepted: " + line);
+        } catch(NumberFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("in: " + line));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Assume;
+import preprocess.SyntheticDataset;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Runs the feature selector end to end with local Spark on a small synthetic dataset, and records
+ * the selected features and the metrics stages of every run.
+ */
+public class LocalSelection
+{
+    private File directory;
+    private String input;
+    private int runs = 0;
+
+    /**
+     * Selected features (original indexes) and names of the metrics stages of one run.
+     */
+    public static class Result
+    {
+        public List<Integer> selected = new ArrayList<>();
+        public List<String> stages = new ArrayList<>();
+    }
+
+    /**
+     * Generate the dataset.
+     * @param directory directory for the dataset and the output of the runs
+     * @throws IOException if the dataset cannot be written
+     */
+    public LocalSelection(File directory) throws IOException
+    {
+        this.directory = directory;
+        this.input = new File(directory, "synthetic.data").getPath();
+        new SyntheticDataset(400, 80, 0.1, 0.3, 4, 2, 7L).write(input, null);
+    }
+
+    /**
+     * Skip the test if the native BLAS of jblas cannot be loaded, which the selection needs.
+     */
+    public static void assumeNativeBlas()
+    {
+        try {
+            new DoubleMatrix(2, 2).mmul(new DoubleMatrix(2, 2));
+        } catch(UnsatisfiedLinkError e) {
+            Assume.assumeNoException("Native BLAS of jblas not available", e);
+        }
+    }
+
+    /**
+     * Select features in a new Spark context.
+     * @param k number of features to be selected
+     * @param options selector options (spark.fs.*)
+     * @param listener additional selection listener, or null
+     * @return selected features and stages
+     */
+    public Result run(int k, Map<String, String> options, SelectionListener listener)
+    {
+        Map<String, String> properties = new HashMap<>(options);
+        properties.put("spark.master", "local[2]");
+        properties.put("spark.ui.enabled", "false");
+        properties.forEach(System::setProperty);
+
+        Result result = new Result();
+        AdsInputReader reader = new AdsInputReader(input, 2);
+
+        try {
+            reader.addSelectionListener((rank, featureIndex, score, elapsed) -> result.selected.add(featureIndex));
+
+            if(listener != null) {
+                reader.addSelectionListener(listener);
+            }
+
+            reader.addMetricsSink(stage -> result.stages.add(stage.getName()));
+            reader.process(k, new File(directory, "selected-" + runs++ + ".data").getPath(), "ads", "none");
+        } finally {
+            reader.getSparkContext().stop();
+            properties.keySet().forEach(System::clearProperty);
+        }
+
+        return result;
+    }
+}
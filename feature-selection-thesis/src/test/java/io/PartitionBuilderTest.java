@@ -0,0 +1,52 @@
+package io;
+
+import org.jblas.DoubleMatrix;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PartitionBuilderTest
+{
+    private static final int COLUMNS = 6;
+
+    @Test
+    public void unsortedRowsGiveTheSameBlockInEveryStorage()
+    {
+        LocalSelection.assumeNativeBlas();
+
+        FeatureBlock sparse = build(PartitionBuilder.Storage.SPARSE);
+        FeatureBlock dense = build(PartitionBuilder.Storage.DENSE);
+        FeatureBlock bitset = build(PartitionBuilder.Storage.BITSET);
+        int all[] = {0, 1, 2, 3, 4, 5};
+
+        assertEquals(dense.getColumns(all), sparse.getColumns(all));
+        assertEquals(dense.getColumns(all), bitset.getColumns(all));
+        assertEquals(dense.gramMatrix(), sparse.gramMatrix());
+
+        for(int j = 0; j < COLUMNS; j++) {
+            assertEquals(dense.columnCrossProducts(j), sparse.columnCrossProducts(j));
+        }
+    }
+
+    @Test
+    public void lastValueOfARepeatedIndexIsKept()
+    {
+        DoubleMatrix columns = build(PartitionBuilder.Storage.SPARSE).getColumns(new int[]{1, 4});
+
+        assertEquals(new DoubleMatrix(new double[][]{{1, 0}, {1, 1}, {0, 0}}), columns);
+    }
+
+    /**
+     * Build a block of three 0/1 rows given in unsorted order, one with a repeated index.
+     */
+    private static FeatureBlock build(PartitionBuilder.Storage storage)
+    {
+        PartitionBuilder builder = new PartitionBuilder(0);
+        builder.addRow(1.0, new int[]{5, 1, 3}, new double[]{1, 1, 1}, 3);
+        builder.addRow(0.0, new int[]{4, 0, 4, 1}, new double[]{0.5, 1, 1, 1}, 4);
+        builder.addRow(1.0, new int[]{2, 0}, new double[]{1, 1}, 2);
+
+        // the repeated index keeps its last value, 0.5 is replaced by the 1 after it
+        return builder.build(new int[]{0, 1, 2, 3, 4, 5}, new double[]{0.0, 1.0}, new int[]{0, 1}, 2, storage);
+    }
+}
@@ -0,0 +1,52 @@
+package io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SelectionCacheTest
+{
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalSelection selection;
+    private Map<String, String> options = new HashMap<>();
+
+    @Before
+    public void setUp() throws Exception
+    {
+        LocalSelection.assumeNativeBlas();
+        selection = new LocalSelection(folder.newFolder());
+        options.put("spark.fs.cache.path", folder.newFolder().getPath());
+    }
+
+    @Test
+    public void shorterSelectionIsTakenFromTheCache()
+    {
+        LocalSelection.Result cached = selection.run(10, options, null);
+        LocalSelection.Result prefix = selection.run(6, options, null);
+
+        assertEquals(cached.selected.subList(0, 6), prefix.selected);
+        assertFalse(prefix.stages.toString(), prefix.stages.contains("scoring"));
+        assertFalse(prefix.stages.toString(), prefix.stages.contains("iteration"));
+    }
+
+    @Test
+    public void longerSelectionContinuesFromTheCache()
+    {
+        selection.run(6, options, null);
+        LocalSelection.Result continued = selection.run(12, options, null);
+        LocalSelection.Result fresh = selection.run(12, Collections.emptyMap(), null);
+
+        assertEquals(fresh.selected, continued.selected);
+        assertTrue(continued.stages.toString(), continued.stages.contains("resume"));
+        assertEquals(12 - 6, Collections.frequency(continued.stages, "iteration"));
+    }
+}
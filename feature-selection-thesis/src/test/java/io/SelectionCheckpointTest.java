@@ -0,0 +1,92 @@
+package io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SelectionCheckpointTest
+{
+    private static final int K = 12;
+
+    /**
+     * Rank at which the first run is stopped, the checkpoint holds the features before it.
+     */
+    private static final int STOP = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalSelection selection;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        LocalSelection.assumeNativeBlas();
+        selection = new LocalSelection(folder.newFolder());
+    }
+
+    @Test
+    public void resumedGreedySelectionEqualsFreshRun() throws Exception
+    {
+        assertResumeEqualsFreshRun(new HashMap<>());
+    }
+
+    @Test
+    public void resumedRecomputedSelectionEqualsFreshRun() throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        options.put("spark.fs.incremental", "false");
+        assertResumeEqualsFreshRun(options);
+    }
+
+    @Test
+    public void resumedShardedSelectionEqualsFreshRun() throws Exception
+    {
+        Map<String, String> options = new HashMap<>();
+        options.put("spark.fs.layout", "features");
+        assertResumeEqualsFreshRun(options);
+    }
+
+    /**
+     * Stop a selection with checkpoints after STOP - 1 features, continue it in a new run and
+     * compare it with a run without checkpoints.
+     */
+    private void assertResumeEqualsFreshRun(Map<String, String> options) throws Exception
+    {
+        List<Integer> fresh = selection.run(K, options, null).selected;
+        assertEquals(K, fresh.size());
+
+        File checkpoints = folder.newFolder();
+        Map<String, String> checkpointOptions = new HashMap<>(options);
+        checkpointOptions.put("spark.fs.checkpoint.path", checkpoints.getPath());
+        checkpointOptions.put("spark.fs.checkpoint.iterations", "2");
+
+        try {
+            selection.run(K, checkpointOptions, (rank, featureIndex, score, elapsed) -> {
+                if(rank == STOP) {
+                    throw new IllegalStateException("stopped");
+                }
+            });
+            fail("Selection was not stopped");
+        } catch(IllegalStateException e) {
+            assertEquals("stopped", e.getMessage());
+        }
+
+        assertEquals(1, checkpoints.list().length);
+
+        LocalSelection.Result resumed = selection.run(K, checkpointOptions, null);
+        assertEquals(fresh, resumed.selected);
+        assertTrue(resumed.stages.toString(), resumed.stages.contains("resume"));
+
+        // the finished selection removes its state
+        assertEquals(0, checkpoints.list().length);
+    }
+}